@@ -0,0 +1,169 @@
+package com.example.myapplication;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Contacts with a phone number, one record per number carrying the contact's emails. */
+final class ContactsSource implements DataSource {
+
+    private final ContentResolver contentResolver;
+    private final FieldSelection fields;
+
+    ContactsSource(ContentResolver contentResolver, FieldSelection fields) {
+        this.contentResolver = contentResolver;
+        this.fields = fields;
+    }
+
+    @Override
+    public String getName() {
+        return "contacts";
+    }
+
+    @Override
+    public ExtractionEngine.Shape getShape() {
+        return ExtractionEngine.Shape.ARRAY;
+    }
+
+    @Override
+    public void write(JsonStreamWriter out, SourceMetrics metrics) throws IOException {
+        // One pass over Data for both mimetypes, ordered so each contact's rows are adjacent.
+        // Records are per phone number, so phone rows are read even if no phone field is selected
+        boolean withEmails = fields.includesAny("email", "emails");
+        List<String> projection = new ArrayList<>();
+        projection.add(ContactsContract.Data.CONTACT_ID);
+        projection.add(ContactsContract.Data.MIMETYPE);
+        if (fields.includes("name")) {
+            projection.add(ContactsContract.Data.DISPLAY_NAME);
+        }
+        if (withEmails || fields.includes("phone_number")) {
+            projection.add(ContactsContract.Data.DATA1);
+        }
+        if (fields.includes("phone_type")) {
+            projection.add(ContactsContract.Data.DATA2);
+        }
+        String selection;
+        String[] selectionArgs;
+        if (withEmails) {
+            selection = ContactsContract.Data.MIMETYPE + " IN (?, ?)";
+            selectionArgs = new String[]{
+                    ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE,
+                    ContactsContract.CommonDataKinds.Email.CONTENT_ITEM_TYPE
+            };
+        } else {
+            selection = ContactsContract.Data.MIMETYPE + " = ?";
+            selectionArgs = new String[]{ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE};
+        }
+
+        out.beginArray();
+        long query = metrics.queryStarted();
+        try (Cursor cursor = contentResolver.query(
+                ContactsContract.Data.CONTENT_URI,
+                projection.toArray(new String[0]),
+                selection,
+                selectionArgs,
+                ContactsContract.Data.CONTACT_ID + " ASC"
+        )) {
+            metrics.queryFinished(query);
+            if (cursor != null) {
+                int contactIdIndex = cursor.getColumnIndex(ContactsContract.Data.CONTACT_ID);
+                int mimeTypeIndex = cursor.getColumnIndex(ContactsContract.Data.MIMETYPE);
+                int nameIndex = cursor.getColumnIndex(ContactsContract.Data.DISPLAY_NAME);
+                int dataIndex = cursor.getColumnIndex(ContactsContract.Data.DATA1);
+                int typeIndex = cursor.getColumnIndex(ContactsContract.Data.DATA2);
+
+                ContactRows contact = new ContactRows(fields);
+                while (cursor.moveToNext()) {
+                    long contactId;
+                    String mimeType;
+                    String name;
+                    String data;
+                    String type;
+                    try {
+                        contactId = (contactIdIndex >= 0) ? cursor.getLong(contactIdIndex) : 0;
+                        mimeType = (mimeTypeIndex >= 0) ? cursor.getString(mimeTypeIndex) : "";
+                        name = (nameIndex >= 0) ? cursor.getString(nameIndex) : "";
+                        data = (dataIndex >= 0) ? cursor.getString(dataIndex) : "";
+                        type = (typeIndex >= 0) ? cursor.getString(typeIndex) : "";
+                    } catch (Exception e) {
+                        metrics.rowSkipped();
+                        continue;
+                    }
+
+                    if (contactId != contact.contactId) {
+                        contact.writeTo(out, metrics);
+                        contact.reset(contactId);
+                    }
+                    if (contact.name == null) {
+                        contact.name = name;
+                    }
+                    if (ContactsContract.CommonDataKinds.Phone.CONTENT_ITEM_TYPE.equals(mimeType)) {
+                        contact.phoneNumbers.add(data != null ? data : "");
+                        contact.phoneTypes.add(type != null ? type : "");
+                    } else if (data != null && !data.isEmpty()) {
+                        contact.emails.add(data);
+                    }
+                }
+                contact.writeTo(out, metrics);
+            }
+        }
+        out.endArray();
+    }
+
+    // Phone and email rows collected for the contact currently under the cursor
+    private static final class ContactRows {
+        final FieldSelection fields;
+        long contactId = Long.MIN_VALUE;
+        String name;
+        final List<String> phoneNumbers = new ArrayList<>();
+        final List<String> phoneTypes = new ArrayList<>();
+        final List<String> emails = new ArrayList<>();
+
+        ContactRows(FieldSelection fields) {
+            this.fields = fields;
+        }
+
+        void reset(long contactId) {
+            this.contactId = contactId;
+            name = null;
+            phoneNumbers.clear();
+            phoneTypes.clear();
+            emails.clear();
+        }
+
+        // One record per phone number, as before, now carrying every email of the contact
+        void writeTo(JsonStreamWriter out, SourceMetrics metrics) throws IOException {
+            for (int i = 0; i < phoneNumbers.size(); i++) {
+                out.beginObject();
+                if (fields.includes("contact_id")) {
+                    out.name("contact_id").value(Long.toString(contactId));
+                }
+                if (fields.includes("name")) {
+                    out.name("name").value(name != null ? name : "");
+                }
+                if (fields.includes("phone_number")) {
+                    out.name("phone_number").value(phoneNumbers.get(i));
+                }
+                if (fields.includes("phone_type")) {
+                    out.name("phone_type").value(phoneTypes.get(i));
+                }
+                if (fields.includes("email")) {
+                    out.name("email").value(emails.isEmpty() ? "" : emails.get(0));
+                }
+                if (fields.includes("emails")) {
+                    out.name("emails").beginArray();
+                    for (String email : emails) {
+                        out.value(email);
+                    }
+                    out.endArray();
+                }
+                out.endObject();
+                metrics.rowWritten();
+            }
+        }
+    }
+}
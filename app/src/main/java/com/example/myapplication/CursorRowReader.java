@@ -0,0 +1,44 @@
+package com.example.myapplication;
+
+import android.database.Cursor;
+
+/**
+ * Copies the current cursor row into a {@link RowBuffer}. Column indices are
+ * resolved once per cursor instead of once per row.
+ */
+final class CursorRowReader {
+
+    private final Cursor cursor;
+    private final int[] indices;
+    private final RecordSchema.ColumnType[] types;
+
+    CursorRowReader(Cursor cursor, RecordSchema schema) {
+        this.cursor = cursor;
+        int columnCount = schema.getColumnCount();
+        indices = new int[columnCount];
+        types = new RecordSchema.ColumnType[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            indices[i] = cursor.getColumnIndex(schema.getColumnName(i));
+            types[i] = schema.getColumnType(i);
+        }
+    }
+
+    /**
+     * @return false if the row could not be read and should be skipped
+     */
+    boolean read(RowBuffer row) {
+        try {
+            for (int i = 0; i < indices.length; i++) {
+                int index = indices[i];
+                if (types[i] == RecordSchema.ColumnType.LONG) {
+                    row.setLong(i, index >= 0 ? cursor.getLong(index) : 0);
+                } else {
+                    row.setString(i, index >= 0 ? cursor.getString(index) : null);
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
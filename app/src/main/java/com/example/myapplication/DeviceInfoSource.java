@@ -0,0 +1,56 @@
+package com.example.myapplication;
+
+import android.os.Build;
+
+import java.io.IOException;
+import java.util.Date;
+
+/** Build properties of the device, written as one object. */
+final class DeviceInfoSource implements DataSource {
+
+    private final FieldSelection fields;
+
+    DeviceInfoSource(FieldSelection fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public String getName() {
+        return "device_info";
+    }
+
+    @Override
+    public ExtractionEngine.Shape getShape() {
+        return ExtractionEngine.Shape.OBJECT;
+    }
+
+    @Override
+    public void write(JsonStreamWriter out, SourceMetrics metrics) throws IOException {
+        out.beginObject();
+        field(out, "device_model", Build.MODEL);
+        field(out, "device_manufacturer", Build.MANUFACTURER);
+        field(out, "device_brand", Build.BRAND);
+        field(out, "android_version", Build.VERSION.RELEASE);
+        field(out, "api_level", Build.VERSION.SDK_INT);
+        field(out, "build_id", Build.ID);
+        field(out, "hardware", Build.HARDWARE);
+        field(out, "product", Build.PRODUCT);
+        field(out, "board", Build.BOARD);
+        field(out, "bootloader", Build.BOOTLOADER);
+        field(out, "fingerprint", Build.FINGERPRINT);
+        field(out, "extraction_timestamp", new Date().toString());
+        out.endObject();
+    }
+
+    private void field(JsonStreamWriter out, String name, String value) throws IOException {
+        if (fields.includes(name)) {
+            out.name(name).value(value);
+        }
+    }
+
+    private void field(JsonStreamWriter out, String name, long value) throws IOException {
+        if (fields.includes(name)) {
+            out.name(name).value(value);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Process;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persisted state of the data and photo export jobs run by {@link ExportService}.
+ * The activity reads it when it is created and listens for changes while it is
+ * visible, so an export that outlives the activity (rotation, backgrounding) is
+ * picked up again instead of being started twice. A job left running by a
+ * process that has since died is reported as interrupted.
+ */
+final class ExportJobs {
+
+    enum Kind { DATA, PHOTOS }
+
+    enum State { IDLE, RUNNING, SUCCEEDED, FAILED, INTERRUPTED }
+
+    interface Listener {
+        /** Called on the main thread, possibly more than once for one change. */
+        void onJobChanged(Job job);
+    }
+
+    static final class Job {
+        final Kind kind;
+        final State state;
+        final String status;
+        /** File written by the last successful run, or null; kept while a new run is going. */
+        final String outputPath;
+        final long updatedMillis;
+
+        Job(Kind kind, State state, String status, String outputPath, long updatedMillis) {
+            this.kind = kind;
+            this.state = state;
+            this.status = status;
+            this.outputPath = outputPath;
+            this.updatedMillis = updatedMillis;
+        }
+
+        boolean isRunning() {
+            return state == State.RUNNING;
+        }
+    }
+
+    private static final String PREFS_NAME = "export_jobs";
+    private static final String KEY_STATE = ".state";
+    private static final String KEY_STATUS = ".status";
+    private static final String KEY_OUTPUT = ".output";
+    private static final String KEY_UPDATED = ".updated";
+    private static final String KEY_PID = ".pid";
+
+    private final SharedPreferences prefs;
+    // SharedPreferences only holds its listeners weakly
+    private final Map<Listener, SharedPreferences.OnSharedPreferenceChangeListener> listeners = new HashMap<>();
+
+    ExportJobs(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    Job get(Kind kind) {
+        String prefix = kind.name();
+        State state = State.valueOf(prefs.getString(prefix + KEY_STATE, State.IDLE.name()));
+        String status = prefs.getString(prefix + KEY_STATUS, "");
+        if (state == State.RUNNING && prefs.getInt(prefix + KEY_PID, 0) != Process.myPid()) {
+            state = State.INTERRUPTED;
+            status = "Export interrupted before it finished. Last progress:\n" + status;
+        }
+        return new Job(kind, state, status, prefs.getString(prefix + KEY_OUTPUT, null),
+                prefs.getLong(prefix + KEY_UPDATED, 0));
+    }
+
+    /** The job updated most recently, or null if none has run yet. */
+    Job latest() {
+        Job latest = null;
+        for (Kind kind : Kind.values()) {
+            Job job = get(kind);
+            if (job.state != State.IDLE && (latest == null || job.updatedMillis > latest.updatedMillis)) {
+                latest = job;
+            }
+        }
+        return latest;
+    }
+
+    void started(Kind kind, String status) {
+        update(kind, State.RUNNING, status).putInt(kind.name() + KEY_PID, Process.myPid()).apply();
+    }
+
+    void progress(Kind kind, String status) {
+        prefs.edit()
+                .putString(kind.name() + KEY_STATUS, status)
+                .putLong(kind.name() + KEY_UPDATED, System.currentTimeMillis())
+                .apply();
+    }
+
+    void succeeded(Kind kind, String status, String outputPath) {
+        // commit() so the result is on disk before the service lets the process go
+        update(kind, State.SUCCEEDED, status).putString(kind.name() + KEY_OUTPUT, outputPath).commit();
+    }
+
+    void failed(Kind kind, String status) {
+        update(kind, State.FAILED, status).commit();
+    }
+
+    /** The job was stopped from outside before it could finish, e.g. by a system time limit. */
+    void interrupted(Kind kind, String status) {
+        update(kind, State.INTERRUPTED, status).commit();
+    }
+
+    void addListener(Listener listener) {
+        SharedPreferences.OnSharedPreferenceChangeListener prefsListener = (sharedPreferences, key) -> {
+            if (key == null) {
+                return;
+            }
+            for (Kind kind : Kind.values()) {
+                if (key.equals(kind.name() + KEY_STATE) || key.equals(kind.name() + KEY_STATUS)) {
+                    listener.onJobChanged(get(kind));
+                }
+            }
+        };
+        listeners.put(listener, prefsListener);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+    }
+
+    void removeListener(Listener listener) {
+        SharedPreferences.OnSharedPreferenceChangeListener prefsListener = listeners.remove(listener);
+        if (prefsListener != null) {
+            prefs.unregisterOnSharedPreferenceChangeListener(prefsListener);
+        }
+    }
+
+    private SharedPreferences.Editor update(Kind kind, State state, String status) {
+        String prefix = kind.name();
+        return prefs.edit()
+                .putString(prefix + KEY_STATE, state.name())
+                .putString(prefix + KEY_STATUS, status)
+                .putLong(prefix + KEY_UPDATED, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,695 @@
+package com.example.myapplication;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.StatFs;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Runs data and photo exports as a foreground service, so an export keeps going
+ * at full speed through rotation, backgrounding and the activity being destroyed.
+ * Each kind of export runs at most once at a time; progress and the result go to
+ * {@link ExportJobs} and the notification.
+ */
+public class ExportService extends Service {
+
+    static final String ACTION_EXPORT_DATA = "com.example.myapplication.action.EXPORT_DATA";
+    static final String ACTION_EXPORT_PHOTOS = "com.example.myapplication.action.EXPORT_PHOTOS";
+    static final String EXTRA_INCREMENTAL = "incremental";
+    static final String EXTRA_FORMAT = "format";
+    static final String EXTRA_TRACE = "trace";
+    static final String EXTRA_COMPRESS = "compress";
+    // Epoch millis, inclusive and exclusive; absent for an open end
+    static final String EXTRA_FROM_MILLIS = "from_millis";
+    static final String EXTRA_TO_MILLIS = "to_millis";
+
+    static final String FORMAT_JSON = "json";
+    static final String FORMAT_NDJSON = "ndjson";
+    static final String FORMAT_COLUMNAR = "columnar";
+
+    private static final String CHANNEL_ID = "export";
+    private static final int NOTIFICATION_ID = 1;
+    // Photos are mostly JPEG/HEIC already, so only metadata and raw formats get deflated
+    private static final CompressionPolicy PHOTO_COMPRESSION = CompressionPolicy.mediaAware();
+    // Sources hit independent providers, so a few can run side by side
+    private static final int EXTRACTION_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final String PHOTO_INDEX_NAME = "photo_index.bin";
+    private static final String APP_LABEL_CACHE_NAME = "app_labels.bin";
+    // Optional, next to the exports: "<section>=field,field" limits a section to those fields
+    static final String FIELDS_FILE_NAME = "export_fields.properties";
+    // Kept until a photo archive completes, so a killed or failed one resumes on the next run
+    private static final String PHOTO_JOURNAL_NAME = "photo_export.journal";
+    private static final String PHOTO_SPOOL_NAME = "photo_export_spool";
+    // Live status is sampled at this rate, however fast the workers count; only phase changes are persisted
+    private static final long PROGRESS_SAMPLE_MILLIS = 1000;
+    private static final long NOTIFICATION_MIN_INTERVAL_MILLIS = 5000;
+    private static final Map<ExportJobs.Kind, ExportProgress> LIVE_PROGRESS = new ConcurrentHashMap<>();
+
+    private ExportJobs jobs;
+    private NotificationManager notificationManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Guarded by this
+    private final Map<ExportJobs.Kind, ProgressSampler> samplers = new EnumMap<>(ExportJobs.Kind.class);
+    private final Map<ExportJobs.Kind, String> shownProgress = new EnumMap<>(ExportJobs.Kind.class);
+    private final Map<ExportJobs.Kind, String> persistedPhase = new EnumMap<>(ExportJobs.Kind.class);
+    private long lastNotifiedNanos;
+    private final Runnable sampleProgress = this::sampleProgress;
+    // Guarded by this
+    private final EnumSet<ExportJobs.Kind> running = EnumSet.noneOf(ExportJobs.Kind.class);
+    // Guarded by this
+    private final Map<ExportJobs.Kind, Thread> workers = new EnumMap<>(ExportJobs.Kind.class);
+    // Guarded by this; jobs stopped by onTimeout, whose failure is already reported
+    private final EnumSet<ExportJobs.Kind> timedOut = EnumSet.noneOf(ExportJobs.Kind.class);
+    private int lastStartId;
+
+    /**
+     * @param compress gzip a single-file JSON export as it is written; the ZIP formats
+     *                 are compressed already
+     */
+    static void exportData(Context context, boolean incremental, String format, boolean compress,
+                           boolean trace, DateRange range) {
+        ContextCompat.startForegroundService(context, putRange(new Intent(context, ExportService.class)
+                .setAction(ACTION_EXPORT_DATA)
+                .putExtra(EXTRA_INCREMENTAL, incremental)
+                .putExtra(EXTRA_FORMAT, format)
+                .putExtra(EXTRA_COMPRESS, compress)
+                .putExtra(EXTRA_TRACE, trace), range));
+    }
+
+    static void exportPhotos(Context context, boolean incremental, boolean trace, DateRange range) {
+        ContextCompat.startForegroundService(context, putRange(new Intent(context, ExportService.class)
+                .setAction(ACTION_EXPORT_PHOTOS)
+                .putExtra(EXTRA_INCREMENTAL, incremental)
+                .putExtra(EXTRA_TRACE, trace), range));
+    }
+
+    private static Intent putRange(Intent intent, DateRange range) {
+        if (range.fromMillis != Long.MIN_VALUE) {
+            intent.putExtra(EXTRA_FROM_MILLIS, range.fromMillis);
+        }
+        if (range.toMillis != Long.MAX_VALUE) {
+            intent.putExtra(EXTRA_TO_MILLIS, range.toMillis);
+        }
+        return intent;
+    }
+
+    private static DateRange rangeOf(Intent intent) {
+        return new DateRange(intent.getLongExtra(EXTRA_FROM_MILLIS, Long.MIN_VALUE),
+                intent.getLongExtra(EXTRA_TO_MILLIS, Long.MAX_VALUE));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        jobs = new ExportJobs(this);
+        notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            notificationManager.createNotificationChannel(
+                    new NotificationChannel(CHANNEL_ID, "Exports", NotificationManager.IMPORTANCE_LOW));
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Required promptly after startForegroundService(), even for a request that is dropped below
+        Notification notification = notification("Starting export...");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+
+        ExportJobs.Kind kind = intent != null && ACTION_EXPORT_PHOTOS.equals(intent.getAction())
+                ? ExportJobs.Kind.PHOTOS : ExportJobs.Kind.DATA;
+        synchronized (this) {
+            lastStartId = startId;
+            // A second tap, or a recreated activity, must not start the same export twice
+            if (intent == null || !running.add(kind)) {
+                stopIfIdle();
+                return START_NOT_STICKY;
+            }
+        }
+
+        Thread worker = new Thread(() -> {
+            ExportProgress progress = new ExportProgress("Starting export...");
+            track(kind, progress);
+            try {
+                if (kind == ExportJobs.Kind.PHOTOS) {
+                    exportPhotos(intent, progress);
+                } else {
+                    exportData(intent, progress);
+                }
+            } catch (RuntimeException e) {
+                failed(kind, "Export failed: " + e);
+            } finally {
+                untrack(kind);
+                synchronized (this) {
+                    running.remove(kind);
+                    workers.remove(kind);
+                    timedOut.remove(kind);
+                    stopIfIdle();
+                }
+            }
+        }, "export-" + kind.name().toLowerCase(Locale.ROOT));
+        synchronized (this) {
+            workers.put(kind, worker);
+        }
+        worker.start();
+        return START_NOT_STICKY;
+    }
+
+    /**
+     * Called when a dataSync service reaches its daily time limit (Android 15); the
+     * service must stop within seconds or the app is killed. Running exports are
+     * reported as interrupted and their threads interrupted; a photo archive keeps
+     * its journal and resumes on the next run.
+     */
+    @Override
+    public void onTimeout(int startId, int fgsType) {
+        synchronized (this) {
+            for (ExportJobs.Kind kind : running) {
+                timedOut.add(kind);
+                untrack(kind);
+                jobs.interrupted(kind, "Stopped by Android's time limit for background exports.\n"
+                        + (kind == ExportJobs.Kind.PHOTOS
+                        ? "Export photos again to resume." : "Export again to start over."));
+                Thread worker = workers.get(kind);
+                if (worker != null) {
+                    worker.interrupt();
+                }
+            }
+        }
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    // Only stops for the latest start request, so one that just arrived keeps the service alive
+    private void stopIfIdle() {
+        if (running.isEmpty()) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf(lastStartId);
+        }
+    }
+
+    private Notification notification(String text) {
+        PendingIntent openApp = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
+                PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_sys_download)
+                .setContentTitle("Exporting phone data")
+                .setContentText(text)
+                .setContentIntent(openApp)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    /** Live counters of a running export, for the activity to sample; null if none is running. */
+    static ExportProgress liveProgress(ExportJobs.Kind kind) {
+        return LIVE_PROGRESS.get(kind);
+    }
+
+    private void track(ExportJobs.Kind kind, ExportProgress progress) {
+        synchronized (this) {
+            LIVE_PROGRESS.put(kind, progress);
+            samplers.put(kind, new ProgressSampler());
+        }
+        mainHandler.removeCallbacks(sampleProgress);
+        mainHandler.post(sampleProgress);
+    }
+
+    // Under the lock the sampler holds, so no progress sample lands after the final status
+    private synchronized void untrack(ExportJobs.Kind kind) {
+        LIVE_PROGRESS.remove(kind);
+        samplers.remove(kind);
+        shownProgress.remove(kind);
+        persistedPhase.remove(kind);
+    }
+
+    private void succeeded(ExportJobs.Kind kind, String status, String outputPath) {
+        untrack(kind);
+        jobs.succeeded(kind, status, outputPath);
+    }
+
+    private synchronized void failed(ExportJobs.Kind kind, String status) {
+        untrack(kind);
+        // After onTimeout the failure is just the interrupt, already reported
+        if (!timedOut.contains(kind)) {
+            jobs.failed(kind, status);
+        }
+    }
+
+    private synchronized void sampleProgress() {
+        long now = System.nanoTime();
+        String changed = null;
+        for (Map.Entry<ExportJobs.Kind, ProgressSampler> entry : samplers.entrySet()) {
+            ExportJobs.Kind kind = entry.getKey();
+            ExportProgress progress = LIVE_PROGRESS.get(kind);
+            String text = entry.getValue().describe(progress, now);
+            if (!text.equals(shownProgress.put(kind, text))) {
+                changed = text;
+            }
+            // The activity samples the counters itself; the stored status only needs each phase
+            String phase = progress.getPhase();
+            if (!phase.equals(persistedPhase.put(kind, phase))) {
+                jobs.progress(kind, text);
+            }
+        }
+        if (changed != null && now - lastNotifiedNanos >= NOTIFICATION_MIN_INTERVAL_MILLIS * 1_000_000L) {
+            lastNotifiedNanos = now;
+            notificationManager.notify(NOTIFICATION_ID, notification(changed));
+        }
+        if (!samplers.isEmpty()) {
+            mainHandler.postDelayed(sampleProgress, PROGRESS_SAMPLE_MILLIS);
+        }
+    }
+
+    private void exportData(Intent intent, ExportProgress progress) {
+        IncrementalExport incrementalExport = new IncrementalExport(this);
+        // Bounds SMS, calls, events and photo metadata by date; the snapshot sections are always whole.
+        // A ranged file is neither a complete base nor a gap-free delta, so it stays out of the chain
+        DateRange range = rangeOf(intent);
+        boolean chained = range.isAll();
+        // A delta needs a full export to chain to; without one, fall back to a full run
+        boolean delta = chained && intent.getBooleanExtra(EXTRA_INCREMENTAL, false) && incrementalExport.hasBase();
+        // NDJSON keeps every section in its own file, so desktop tools can stream and load them in parallel;
+        // columnar does the same with provider tables stored as compact binary columns
+        String format = intent.getStringExtra(EXTRA_FORMAT);
+        boolean columnar = FORMAT_COLUMNAR.equals(format);
+        boolean lineDelimited = columnar || FORMAT_NDJSON.equals(format);
+        boolean gzip = !lineDelimited && intent.getBooleanExtra(EXTRA_COMPRESS, false);
+        TraceRecorder recorder = intent.getBooleanExtra(EXTRA_TRACE, false) ? new TraceRecorder() : null;
+        Tracer tracer = new SystemTracer(recorder != null ? recorder : Tracer.NONE);
+        String phase = delta ? "Extracting new data since the last export..." : "Extracting data...";
+        jobs.started(ExportJobs.Kind.DATA, phase);
+        progress.setPhase(phase);
+
+        Map<String, FieldSelection> fields;
+        try {
+            fields = loadFieldSelections();
+        } catch (IOException e) {
+            failed(ExportJobs.Kind.DATA, "Cannot read " + FIELDS_FILE_NAME + ": " + e.getMessage());
+            return;
+        }
+
+        IncrementalExport.Run run = incrementalExport.begin(delta);
+        ExtractionEngine engine = new ExtractionEngine(EXTRACTION_PARALLELISM,
+                new File(getCacheDir(), "export_spool_" + System.currentTimeMillis()), "  ")
+                .setMetricsSection("export_metrics")
+                .setTracer(tracer)
+                .setProgress(progress);
+        if (delta) {
+            engine.addSource("export_info", ExtractionEngine.Shape.OBJECT, run::writeInfo);
+        }
+        if (!range.isAll()) {
+            engine.addSource("export_range", ExtractionEngine.Shape.OBJECT, out -> writeRange(range, out));
+        }
+        // Contacts, device info, locations and apps are small snapshots and always exported whole
+        ContentResolver resolver = getContentResolver();
+        engine.addSource(new DeviceInfoSource(fieldsOf(fields, "device_info")))
+                .addSource(new ContactsSource(resolver, fieldsOf(fields, "contacts")));
+        addProviderSource(engine, new ProviderSource(resolver, "sms_messages",
+                ExportSources.sms(range).select(fieldsOf(fields, "sms_messages")), run, tracer), columnar);
+        addProviderSource(engine, new ProviderSource(resolver, "call_logs",
+                ExportSources.callLogs(range).select(fieldsOf(fields, "call_logs")), run, tracer), columnar);
+        addProviderSource(engine, new ProviderSource(resolver, "calendar_events",
+                ExportSources.calendarEvents(range).select(fieldsOf(fields, "calendar_events")), run, tracer), columnar);
+        addProviderSource(engine, new ProviderSource(resolver, "photos_metadata",
+                ExportSources.photosMetadata(range).select(fieldsOf(fields, "photos_metadata")), run, tracer), columnar);
+        engine.addSource(new LocationSource(this, fieldsOf(fields, "location_history")))
+                .addSource(new InstalledAppsSource(getPackageManager(), fieldsOf(fields, "installed_apps"),
+                        new File(getFilesDir(), APP_LABEL_CACHE_NAME), EXTRACTION_PARALLELISM));
+
+        File file = newExportFile(delta ? "data_delta_" : "data_export_",
+                columnar ? ".columnar.zip" : lineDelimited ? ".ndjson.zip" : gzip ? ".json.gz" : ".json");
+        progress.setExpectedTasks(engine.getSourceCount());
+        int bufferSize = ioBufferSize();
+        List<ExtractionEngine.SourceResult> results;
+        long start = System.nanoTime();
+        try (Tracer.Section ignored = tracer.begin("extract data")) {
+            if (lineDelimited) {
+                try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.BEST_SPEED, 1, null, bufferSize)) {
+                    results = engine.runLineDelimited(zip, ZipArchiveWriter.DEFLATED, null);
+                }
+            } else {
+                // The writer's own buffer is sized for the device, so it writes to the file directly
+                try (JsonStreamWriter writer = new JsonStreamWriter(
+                        openDocument(file, gzip, tracer), "  ", bufferSize)) {
+                    results = engine.run(writer, null);
+                }
+            }
+        } catch (Exception e) {
+            // Don't leave a truncated document behind
+            file.delete();
+            failed(ExportJobs.Kind.DATA, "Error extracting data: " + e.getMessage() + "\n" + writeTrace(recorder, file));
+            return;
+        }
+        long wallMillis = (System.nanoTime() - start) / 1_000_000L;
+
+        String metricsStatus;
+        try (Tracer.Section ignored = tracer.begin("write metrics file")) {
+            writeMetricsSidecar(file, delta, range, results, wallMillis, bufferSize);
+            metricsStatus = "";
+        } catch (IOException e) {
+            metricsStatus = "Warning: metrics file not written (" + e.getMessage() + ")\n";
+        }
+
+        String chainStatus;
+        if (!chained) {
+            chainStatus = "Date-ranged export: not part of the incremental chain in "
+                    + IncrementalExport.MANIFEST_NAME + "\n";
+        } else {
+            try (Tracer.Section ignored = tracer.begin("commit export chain")) {
+                incrementalExport.commit(run, file, results);
+                chainStatus = delta ? "Delta of " + run.baseFile + ", listed in " + IncrementalExport.MANIFEST_NAME + "\n" : "";
+            } catch (IOException e) {
+                // The export itself is complete; the next delta just starts from the old watermarks
+                chainStatus = "Warning: export history not updated (" + e.getMessage() + ")\n";
+            }
+        }
+
+        String fileName = file.getAbsolutePath();
+        String report = chainStatus + metricsStatus + writeTrace(recorder, file) + formatSourceReport(results);
+        succeeded(ExportJobs.Kind.DATA,
+                "Data extracted successfully!\nSaved to: " + fileName + "\n\n" + report, fileName);
+    }
+
+    private String formatSourceReport(List<ExtractionEngine.SourceResult> results) {
+        StringBuilder report = new StringBuilder();
+        for (ExtractionEngine.SourceResult result : results) {
+            report.append(result.name).append(": ");
+            if (result.isSuccess()) {
+                report.append(result.metrics.getRows()).append(" rows in ")
+                        .append(result.durationMillis).append(" ms");
+                if (result.metrics.getSkippedRows() > 0) {
+                    report.append(", ").append(result.metrics.getSkippedRows()).append(" skipped");
+                }
+            } else {
+                report.append("FAILED (").append(result.error.getClass().getSimpleName())
+                        .append(": ").append(result.error.getMessage()).append(")");
+            }
+            report.append("\n");
+        }
+        return report.toString();
+    }
+
+    private Map<String, FieldSelection> loadFieldSelections() throws IOException {
+        return FieldSelection.load(new File(getExportDir(), FIELDS_FILE_NAME));
+    }
+
+    private static FieldSelection fieldsOf(Map<String, FieldSelection> fields, String section) {
+        FieldSelection selection = fields.get(section);
+        return selection != null ? selection : FieldSelection.ALL;
+    }
+
+    private static void addProviderSource(ExtractionEngine engine, ProviderSource source, boolean columnar) {
+        if (columnar) {
+            engine.addBinarySource(source.getName(), FORMAT_COLUMNAR, source::writeColumnar);
+        } else {
+            engine.addSource(source);
+        }
+    }
+
+    // Closes the file again if the compressor cannot be set up
+    private static OutputStream openDocument(File file, boolean gzip, Tracer tracer) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        if (!gzip) {
+            return out;
+        }
+        try {
+            // Compressed on every core while the sources stream, so it costs no second pass
+            return new ParallelGzipOutputStream(out, Deflater.DEFAULT_COMPRESSION,
+                    Runtime.getRuntime().availableProcessors()).setTracer(tracer);
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    // Names a file written beside an export, e.g. data_export_<timestamp>_metrics.json for any format
+    private static File sidecarFile(File exportFile, String suffix) {
+        String name = exportFile.getName();
+        int dot = name.indexOf('.');
+        return new File(exportFile.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + suffix);
+    }
+
+    // Returns a line for the status report, empty when no trace was recorded
+    private static String writeTrace(TraceRecorder recorder, File exportFile) {
+        if (recorder == null) {
+            return "";
+        }
+        File traceFile = sidecarFile(exportFile, "_trace.json");
+        try {
+            recorder.writeTo(traceFile);
+            return "Trace: " + traceFile.getName() + " (open in ui.perfetto.dev)\n";
+        } catch (IOException e) {
+            return "Warning: trace not written (" + e.getMessage() + ")\n";
+        }
+    }
+
+    // Open ends are left out, so an unbounded export writes an empty object
+    private static void writeRange(DateRange range, JsonStreamWriter out) throws IOException {
+        out.beginObject();
+        if (range.fromMillis != Long.MIN_VALUE) {
+            out.name("from").value(range.fromMillis);
+            out.name("formatted_from");
+            TimestampFormatter.writeTo(range.fromMillis, out);
+        }
+        if (range.toMillis != Long.MAX_VALUE) {
+            out.name("to").value(range.toMillis);
+            out.name("formatted_to");
+            TimestampFormatter.writeTo(range.toMillis, out);
+        }
+        out.endObject();
+    }
+
+    // Same numbers as the export_metrics section, tagged with the phone and build so runs can be compared
+    private void writeMetricsSidecar(File exportFile, boolean delta, DateRange range,
+                                     List<ExtractionEngine.SourceResult> results, long wallMillis,
+                                     int bufferSize) throws IOException {
+        String name = exportFile.getName();
+        File sidecar = sidecarFile(exportFile, "_metrics.json");
+        try (JsonStreamWriter out = new JsonStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(sidecar)), "  ")) {
+            out.beginObject();
+            out.name("export_file").value(name);
+            out.name("mode").value(delta ? "delta" : "full");
+            out.name("date_range");
+            writeRange(range, out);
+            out.name("device_model").value(Build.MODEL);
+            out.name("device_manufacturer").value(Build.MANUFACTURER);
+            out.name("api_level").value(Build.VERSION.SDK_INT);
+            out.name("fingerprint").value(Build.FINGERPRINT);
+            out.name("app_version").value(appVersion());
+            out.name("parallelism").value(EXTRACTION_PARALLELISM);
+            out.name("max_heap_bytes").value(Runtime.getRuntime().maxMemory());
+            out.name("io_buffer_bytes").value(bufferSize);
+            // Sections plus the document or archive framing around them
+            out.name("file_bytes").value(exportFile.length());
+            out.name("export_metrics");
+            ExtractionEngine.writeMetrics(results, wallMillis, out);
+            out.endObject();
+        }
+    }
+
+    // Written beside a photo archive: what the run read and wrote, for comparing devices
+    private void writePhotoMetricsSidecar(File zipFile, PhotoArchiver.Result result, long wallMillis,
+                                          int bufferSize) throws IOException {
+        File sidecar = sidecarFile(zipFile, "_metrics.json");
+        try (JsonStreamWriter out = new JsonStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(sidecar)), "  ")) {
+            out.beginObject();
+            out.name("export_file").value(zipFile.getName());
+            out.name("device_model").value(Build.MODEL);
+            out.name("api_level").value(Build.VERSION.SDK_INT);
+            out.name("app_version").value(appVersion());
+            out.name("io_buffer_bytes").value(bufferSize);
+            out.name("wall_ms").value(wallMillis);
+            out.name("photos").value(result.photoCount);
+            out.name("copied_photos").value(result.copiedCount);
+            out.name("referenced_photos").value(result.referencedCount);
+            out.name("resumed_photos").value(result.resumedCount);
+            out.name("bytes_copied").value(result.bytesCopied);
+            out.name("bytes_hashed").value(result.bytesHashed);
+            out.name("bytes_written").value(result.bytesWritten);
+            out.endObject();
+        }
+    }
+
+    // Write buffer of a whole number of blocks of the export file system
+    private int ioBufferSize() {
+        try {
+            return ZipArchiveWriter.bufferSizeFor(new StatFs(getExportDir().getPath()).getBlockSizeLong());
+        } catch (IllegalArgumentException e) {
+            return ZipArchiveWriter.DEFAULT_BUFFER_SIZE;
+        }
+    }
+
+    private String appVersion() {
+        try {
+            PackageInfo info = getPackageManager().getPackageInfo(getPackageName(), 0);
+            return info.versionName + " (" + PackageInfoCompat.getLongVersionCode(info) + ")";
+        } catch (PackageManager.NameNotFoundException e) {
+            return "";
+        }
+    }
+
+    private void exportPhotos(Intent intent, ExportProgress progress) {
+        // Incremental mode only copies photos that no earlier archive holds
+        boolean reuseArchived = intent.getBooleanExtra(EXTRA_INCREMENTAL, false);
+        TraceRecorder recorder = intent.getBooleanExtra(EXTRA_TRACE, false) ? new TraceRecorder() : null;
+        Tracer tracer = new SystemTracer(recorder != null ? recorder : Tracer.NONE);
+        jobs.started(ExportJobs.Kind.PHOTOS, "Extracting photos and creating ZIP archive...");
+        progress.setPhase("Extracting photos and creating ZIP archive...");
+
+        File zipFile = null;
+        try {
+            File indexFile = new File(getFilesDir(), PHOTO_INDEX_NAME);
+            PhotoIndex photoIndex;
+            try (Tracer.Section ignored = tracer.begin("load photo index")) {
+                photoIndex = reuseArchived ? PhotoIndex.load(indexFile) : new PhotoIndex();
+            } catch (IOException e) {
+                // An unreadable index only costs a full copy, which then rebuilds it
+                photoIndex = new PhotoIndex();
+            }
+
+            File journalFile = new File(getFilesDir(), PHOTO_JOURNAL_NAME);
+            PhotoJournal.State resume;
+            try {
+                resume = PhotoJournal.read(journalFile);
+            } catch (IOException e) {
+                resume = null;
+            }
+            DateRange range = rangeOf(intent);
+            FieldSelection metadataFields = fieldsOf(loadFieldSelections(), "photo_archive");
+            String metadataEntryName;
+            String staleNote = "";
+            if (resume != null && !resume.isFor(range, metadataFields, reuseArchived)) {
+                // Finishing it would mix two selections in one archive; it can never be completed now
+                new File(getExportDir(), resume.archiveName).delete();
+                journalFile.delete();
+                staleNote = "\n(discarded the interrupted " + resume.archiveName + ", started with other settings)";
+                resume = null;
+            }
+            if (resume != null && new File(getExportDir(), resume.archiveName).exists()) {
+                zipFile = new File(getExportDir(), resume.archiveName);
+                metadataEntryName = resume.metadataEntryName;
+                progress.setPhase("Resuming " + zipFile.getName() + " after " + resume.photoCount + " photos...");
+            } else {
+                resume = null;
+                String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+                zipFile = new File(getExportDir(), "photos_export_" + timestamp + ".zip");
+                metadataEntryName = "photos_metadata_" + timestamp + ".json";
+            }
+
+            int bufferSize = ioBufferSize();
+            PhotoArchiver archiver = new PhotoArchiver(getContentResolver(),
+                    new File(getFilesDir(), PHOTO_SPOOL_NAME), PHOTO_COMPRESSION,
+                    Runtime.getRuntime().availableProcessors(), tracer,
+                    metadataFields, range, bufferSize);
+            PhotoArchiver.Result result;
+            long start = System.nanoTime();
+            try (Tracer.Section ignored = tracer.begin("extract photos")) {
+                result = archiver.archive(zipFile, metadataEntryName, journalFile, resume, photoIndex,
+                        reuseArchived, progress.start("photos", "photos"));
+            }
+            long wallMillis = (System.nanoTime() - start) / 1_000_000L;
+
+            try (Tracer.Section ignored = tracer.begin("save photo index")) {
+                if (!reuseArchived) {
+                    // A fresh or ranged run saw only part of the library; keep what earlier runs indexed
+                    PhotoIndex saved;
+                    try {
+                        saved = PhotoIndex.load(indexFile);
+                    } catch (IOException e) {
+                        saved = new PhotoIndex();
+                    }
+                    saved.addAll(photoIndex);
+                    photoIndex = saved;
+                }
+                photoIndex.save(indexFile);
+            }
+
+            String reuseNote = result.referencedCount > 0
+                    ? "\n(" + result.copiedCount + " new, " + result.referencedCount + " already in earlier archives)"
+                    : "";
+            if (result.resumedCount > 0) {
+                reuseNote += "\n(resumed after " + result.resumedCount + " photos)";
+            }
+            reuseNote += staleNote;
+            String metricsStatus;
+            try {
+                writePhotoMetricsSidecar(zipFile, result, wallMillis, bufferSize);
+                metricsStatus = "";
+            } catch (IOException e) {
+                metricsStatus = "\nWarning: metrics file not written (" + e.getMessage() + ")";
+            }
+            String traceStatus = writeTrace(recorder, zipFile);
+            succeeded(ExportJobs.Kind.PHOTOS,
+                    "Photos ZIP created successfully!\n" + result.photoCount + " photos archived in: " + zipFile.getName() + reuseNote
+                            + String.format(Locale.ROOT, "\nRead %.1f MB, wrote %.1f MB",
+                            (result.bytesCopied + result.bytesHashed) / (1024.0 * 1024.0),
+                            result.bytesWritten / (1024.0 * 1024.0))
+                            + metricsStatus + (traceStatus.isEmpty() ? "" : "\n" + traceStatus),
+                    zipFile.getAbsolutePath());
+        } catch (Exception e) {
+            String traceStatus = zipFile != null ? writeTrace(recorder, zipFile) : "";
+            // The partial archive and its journal stay behind for the next run to resume
+            failed(ExportJobs.Kind.PHOTOS, "Error extracting photos: " + e.getMessage()
+                    + "\nExport photos again to resume.\n" + traceStatus);
+        }
+    }
+
+    private File newExportFile(String prefix, String extension) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        return new File(getExportDir(), prefix + timestamp + extension);
+    }
+
+    private File getExportDir() {
+        File externalDir = getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        if (externalDir == null) {
+            externalDir = getFilesDir();
+        }
+        return externalDir;
+    }
+}
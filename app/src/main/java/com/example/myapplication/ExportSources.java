@@ -0,0 +1,163 @@
+package com.example.myapplication;
+
+import android.provider.CallLog;
+import android.provider.CalendarContract;
+import android.provider.MediaStore;
+import android.provider.Telephony;
+
+/**
+ * Provider queries and record layouts for each cursor-backed export section.
+ */
+final class ExportSources {
+
+    // Rows per page; sized so one page of each source stays within a couple of
+    // CursorWindows (message bodies and event descriptions are the large fields)
+    static final int SMS_PAGE_SIZE = 1000;
+    static final int CALL_LOG_PAGE_SIZE = 2000;
+    static final int CALENDAR_EVENT_PAGE_SIZE = 500;
+    static final int PHOTO_METADATA_PAGE_SIZE = 2000;
+
+    static final RecordSchema SMS_SCHEMA = RecordSchema.builder()
+            .string("id", Telephony.Sms._ID)
+            .string("address", Telephony.Sms.ADDRESS)
+            .string("body", Telephony.Sms.BODY)
+            .number("date", Telephony.Sms.DATE)
+            .date("formatted_date", Telephony.Sms.DATE)
+            .label("type", Telephony.Sms.TYPE, ExportSources::getMessageType)
+            .flag("read", Telephony.Sms.READ)
+            .build();
+
+    static final RecordSchema CALL_LOG_SCHEMA = RecordSchema.builder()
+            .string("id", CallLog.Calls._ID)
+            .string("number", CallLog.Calls.NUMBER)
+            .string("name", CallLog.Calls.CACHED_NAME, "Unknown")
+            .number("date", CallLog.Calls.DATE)
+            .date("formatted_date", CallLog.Calls.DATE)
+            .number("duration_seconds", CallLog.Calls.DURATION)
+            .label("call_type", CallLog.Calls.TYPE, ExportSources::getCallType)
+            .build();
+
+    static final RecordSchema CALENDAR_EVENT_SCHEMA = RecordSchema.builder()
+            .string("id", CalendarContract.Events._ID)
+            .string("title", CalendarContract.Events.TITLE)
+            .string("description", CalendarContract.Events.DESCRIPTION)
+            .number("start_time", CalendarContract.Events.DTSTART)
+            .number("end_time", CalendarContract.Events.DTEND)
+            .date("formatted_start", CalendarContract.Events.DTSTART)
+            .date("formatted_end", CalendarContract.Events.DTEND)
+            .string("location", CalendarContract.Events.EVENT_LOCATION)
+            .string("calendar_name", CalendarContract.Events.CALENDAR_DISPLAY_NAME)
+            .build();
+
+    static final RecordSchema PHOTO_METADATA_SCHEMA = RecordSchema.builder()
+            .string("id", MediaStore.Images.Media._ID)
+            .string("name", MediaStore.Images.Media.DISPLAY_NAME)
+            .number("size_bytes", MediaStore.Images.Media.SIZE)
+            .number("date_taken", MediaStore.Images.Media.DATE_TAKEN)
+            .number("date_added", MediaStore.Images.Media.DATE_ADDED)
+            .dateIfSet("formatted_date_taken", MediaStore.Images.Media.DATE_TAKEN, 1)
+            .string("mime_type", MediaStore.Images.Media.MIME_TYPE)
+            .number("width", MediaStore.Images.Media.WIDTH)
+            .number("height", MediaStore.Images.Media.HEIGHT)
+            .build();
+
+    // Photo archive records also carry the file path and the date added (epoch seconds),
+    // and read DATE_MODIFIED to recognise photos an earlier archive already holds
+    static final RecordSchema PHOTO_ARCHIVE_SCHEMA = RecordSchema.builder()
+            .string("id", MediaStore.Images.Media._ID)
+            .string("name", MediaStore.Images.Media.DISPLAY_NAME)
+            .string("original_path", MediaStore.Images.Media.DATA)
+            .number("size_bytes", MediaStore.Images.Media.SIZE)
+            .number("date_taken", MediaStore.Images.Media.DATE_TAKEN)
+            .number("date_added", MediaStore.Images.Media.DATE_ADDED)
+            .dateIfSet("formatted_date_taken", MediaStore.Images.Media.DATE_TAKEN, 1)
+            .dateIfSet("formatted_date_added", MediaStore.Images.Media.DATE_ADDED, 1000)
+            .string("mime_type", MediaStore.Images.Media.MIME_TYPE)
+            .number("width", MediaStore.Images.Media.WIDTH)
+            .number("height", MediaStore.Images.Media.HEIGHT)
+            .column(MediaStore.Images.Media.DATE_MODIFIED, RecordSchema.ColumnType.LONG)
+            .build();
+
+    private ExportSources() {
+    }
+
+    // Row ids only grow, so each incremental query uses _ID as its watermark.
+    // Edits and deletions of already-exported rows are not picked up by a delta.
+    // Date ranges filter on the same epoch-millis column the pages are ordered by.
+    static ProviderQuery sms(DateRange range) {
+        return new ProviderQuery(Telephony.Sms.CONTENT_URI, SMS_SCHEMA,
+                null, null, Telephony.Sms.DATE + " DESC", Telephony.Sms._ID)
+                .within(Telephony.Sms.DATE, range)
+                .paged(Telephony.Sms.DATE, SMS_PAGE_SIZE);
+    }
+
+    static ProviderQuery callLogs(DateRange range) {
+        return new ProviderQuery(CallLog.Calls.CONTENT_URI, CALL_LOG_SCHEMA,
+                null, null, CallLog.Calls.DATE + " DESC", CallLog.Calls._ID)
+                .within(CallLog.Calls.DATE, range)
+                .paged(CallLog.Calls.DATE, CALL_LOG_PAGE_SIZE);
+    }
+
+    static ProviderQuery calendarEvents(DateRange range) {
+        return new ProviderQuery(CalendarContract.Events.CONTENT_URI, CALENDAR_EVENT_SCHEMA,
+                null, null, CalendarContract.Events.DTSTART + " DESC", CalendarContract.Events._ID)
+                .within(CalendarContract.Events.DTSTART, range)
+                .paged(CalendarContract.Events.DTSTART, CALENDAR_EVENT_PAGE_SIZE);
+    }
+
+    // Screenshots and downloads often have no DATE_TAKEN, so ranges fall back to DATE_ADDED (in seconds).
+    // The CAST gives the expression integer affinity, so it compares with the string args as a number
+    private static final String PHOTO_DATE = "CAST(COALESCE(" + MediaStore.Images.Media.DATE_TAKEN + ", "
+            + MediaStore.Images.Media.DATE_ADDED + " * 1000) AS INTEGER)";
+
+    static ProviderQuery photosMetadata(DateRange range) {
+        return new ProviderQuery(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, PHOTO_METADATA_SCHEMA,
+                null, null, MediaStore.Images.Media.DATE_TAKEN + " DESC", MediaStore.Images.Media._ID)
+                .within(PHOTO_DATE, range)
+                .paged(MediaStore.Images.Media.DATE_TAKEN, PHOTO_METADATA_PAGE_SIZE);
+    }
+
+    static ProviderQuery photoArchive(DateRange range) {
+        return new ProviderQuery(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, PHOTO_ARCHIVE_SCHEMA,
+                null, null, MediaStore.Images.Media.DATE_TAKEN + " DESC")
+                .within(PHOTO_DATE, range);
+    }
+
+    static String getMessageType(int type) {
+        switch (type) {
+            case Telephony.Sms.MESSAGE_TYPE_INBOX:
+                return "RECEIVED";
+            case Telephony.Sms.MESSAGE_TYPE_SENT:
+                return "SENT";
+            case Telephony.Sms.MESSAGE_TYPE_DRAFT:
+                return "DRAFT";
+            case Telephony.Sms.MESSAGE_TYPE_OUTBOX:
+                return "OUTBOX";
+            case Telephony.Sms.MESSAGE_TYPE_FAILED:
+                return "FAILED";
+            case Telephony.Sms.MESSAGE_TYPE_QUEUED:
+                return "QUEUED";
+            default:
+                return "UNKNOWN";
+        }
+    }
+
+    static String getCallType(int type) {
+        switch (type) {
+            case CallLog.Calls.INCOMING_TYPE:
+                return "INCOMING";
+            case CallLog.Calls.OUTGOING_TYPE:
+                return "OUTGOING";
+            case CallLog.Calls.MISSED_TYPE:
+                return "MISSED";
+            case CallLog.Calls.VOICEMAIL_TYPE:
+                return "VOICEMAIL";
+            case CallLog.Calls.REJECTED_TYPE:
+                return "REJECTED";
+            case CallLog.Calls.BLOCKED_TYPE:
+                return "BLOCKED";
+            default:
+                return "UNKNOWN";
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers, per source, the highest provider _ID already exported, and the chain
+ * of export files since the last full export. A delta run only queries rows above
+ * each watermark; the manifest written next to the exports lists the full export
+ * followed by its deltas, in the order a consumer should apply them.
+ */
+final class IncrementalExport {
+
+    static final String MANIFEST_NAME = "export_manifest.json";
+
+    private static final String PREFS_NAME = "incremental_export";
+    private static final String KEY_WATERMARK = "watermark.";
+    private static final String KEY_LINK = "link.";
+    private static final String KEY_LINK_COUNT = "link_count";
+    private static final String KEY_BASE_FILE = "base_file";
+    private static final String KEY_LAST_FILE = "last_file";
+
+    /** Watermarks read at the start of one export, and the ones it reached. */
+    static final class Run {
+        final boolean delta;
+        final String baseFile;
+        final String previousFile;
+        private final Map<String, Long> after;
+        private final Map<String, Long> reached = new ConcurrentHashMap<>();
+
+        Run(boolean delta, String baseFile, String previousFile, Map<String, Long> after) {
+            this.delta = delta;
+            this.baseFile = baseFile;
+            this.previousFile = previousFile;
+            this.after = after;
+        }
+
+        /** Watermark to query above; 0 means export everything. */
+        long after(String source) {
+            Long watermark = after.get(source);
+            return watermark != null ? watermark : 0;
+        }
+
+        /** Called by a source with the highest watermark it wrote, or -1 if it wrote nothing. */
+        void reached(String source, long watermark) {
+            if (watermark >= 0) {
+                reached.put(source, watermark);
+            }
+        }
+
+        /** Describes what this file contains, so a delta can be read on its own. */
+        void writeInfo(JsonStreamWriter out) throws IOException {
+            out.beginObject();
+            out.name("mode").value(delta ? "delta" : "full");
+            out.name("base_file").value(baseFile != null ? baseFile : "");
+            out.name("previous_file").value(previousFile != null ? previousFile : "");
+            out.name("after_ids").beginObject();
+            for (Map.Entry<String, Long> entry : new TreeMap<>(after).entrySet()) {
+                out.name(entry.getKey()).value(entry.getValue());
+            }
+            out.endObject();
+            out.endObject();
+        }
+    }
+
+    private final SharedPreferences prefs;
+
+    IncrementalExport(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** True once a full export has been recorded for deltas to build on. */
+    boolean hasBase() {
+        return prefs.getInt(KEY_LINK_COUNT, 0) > 0;
+    }
+
+    Run begin(boolean delta) {
+        if (!delta) {
+            return new Run(false, null, null, new TreeMap<>());
+        }
+        Map<String, Long> after = new TreeMap<>();
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(KEY_WATERMARK)) {
+                after.put(key.substring(KEY_WATERMARK.length()), prefs.getLong(key, 0));
+            }
+        }
+        return new Run(true, prefs.getString(KEY_BASE_FILE, null), prefs.getString(KEY_LAST_FILE, null), after);
+    }
+
+    /**
+     * Records a finished export: advances the watermark of every source that
+     * succeeded, appends the file to the chain (a full export starts a new one)
+     * and rewrites the manifest beside it. A failed source keeps its old
+     * watermark, so the next delta picks up its rows again.
+     */
+    void commit(Run run, File exportFile, List<ExtractionEngine.SourceResult> results) throws IOException {
+        Map<String, Long> watermarks = new TreeMap<>(run.after);
+        for (ExtractionEngine.SourceResult result : results) {
+            Long reached = run.reached.get(result.name);
+            if (result.isSuccess() && reached != null && reached > run.after(result.name)) {
+                watermarks.put(result.name, reached);
+            }
+        }
+
+        int linkCount = run.delta ? prefs.getInt(KEY_LINK_COUNT, 0) : 0;
+        String link = describeLink(run, exportFile, watermarks);
+
+        SharedPreferences.Editor editor = prefs.edit();
+        if (!run.delta) {
+            editor.clear();
+            editor.putString(KEY_BASE_FILE, exportFile.getName());
+        }
+        for (Map.Entry<String, Long> entry : watermarks.entrySet()) {
+            editor.putLong(KEY_WATERMARK + entry.getKey(), entry.getValue());
+        }
+        editor.putString(KEY_LINK + linkCount, link);
+        editor.putInt(KEY_LINK_COUNT, linkCount + 1);
+        editor.putString(KEY_LAST_FILE, exportFile.getName());
+
+        String[] links = new String[linkCount + 1];
+        for (int i = 0; i < linkCount; i++) {
+            links[i] = prefs.getString(KEY_LINK + i, "{}");
+        }
+        links[linkCount] = link;
+        writeManifest(new File(exportFile.getParentFile(), MANIFEST_NAME),
+                run.delta ? run.baseFile : exportFile.getName(), links);
+
+        // Only advance once the manifest that references this file is on disk
+        if (!editor.commit()) {
+            throw new IOException("Could not save export watermarks");
+        }
+    }
+
+    private static String describeLink(Run run, File exportFile, Map<String, Long> watermarks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonStreamWriter out = new JsonStreamWriter(bytes, null)) {
+            out.beginObject();
+            out.name("file").value(exportFile.getName());
+            out.name("mode").value(run.delta ? "delta" : "full");
+            out.name("created").value(TimestampFormatter.format(System.currentTimeMillis()));
+            out.name("sources").beginObject();
+            for (Map.Entry<String, Long> entry : watermarks.entrySet()) {
+                out.name(entry.getKey()).beginObject();
+                out.name("after_id").value(run.after(entry.getKey()));
+                out.name("through_id").value(entry.getValue());
+                out.endObject();
+            }
+            out.endObject();
+            out.endObject();
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void writeManifest(File manifest, String baseFile, String[] links) throws IOException {
+        File temp = new File(manifest.getPath() + ".tmp");
+        try (JsonStreamWriter out = new JsonStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(temp)), "  ")) {
+            out.beginObject();
+            out.name("base_file").value(baseFile != null ? baseFile : "");
+            out.name("exports").beginArray();
+            for (String link : links) {
+                out.rawValue(new ByteArrayInputStream(link.getBytes(StandardCharsets.UTF_8)));
+            }
+            out.endArray();
+            out.endObject();
+        }
+        if (!temp.renameTo(manifest)) {
+            temp.delete();
+            throw new IOException("Could not write " + manifest);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.myapplication;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Every installed package with its label, version and install times. Labels
+ * come from an {@link AppLabelCache} where possible; the rest are resolved on a
+ * small pool, since each can load the other app's resources.
+ */
+final class InstalledAppsSource implements DataSource {
+
+    private final PackageManager packageManager;
+    private final FieldSelection fields;
+    private final File labelCacheFile;
+    private final int labelThreads;
+
+    InstalledAppsSource(PackageManager packageManager, FieldSelection fields, File labelCacheFile, int labelThreads) {
+        this.packageManager = packageManager;
+        this.fields = fields;
+        this.labelCacheFile = labelCacheFile;
+        this.labelThreads = labelThreads;
+    }
+
+    @Override
+    public String getName() {
+        return "installed_apps";
+    }
+
+    @Override
+    public ExtractionEngine.Shape getShape() {
+        return ExtractionEngine.Shape.ARRAY;
+    }
+
+    @Override
+    public void write(JsonStreamWriter out, SourceMetrics metrics) throws IOException {
+        long query = metrics.queryStarted();
+        List<PackageInfo> packages = packageManager.getInstalledPackages(0);
+        metrics.queryFinished(query);
+
+        // Loading a label can mean loading the app's resources, so it is only done if selected
+        boolean withLabel = fields.includes("app_name");
+        String[] labels = withLabel ? resolveLabels(packages) : null;
+        out.beginArray();
+        for (int i = 0; i < packages.size(); i++) {
+            PackageInfo packageInfo = packages.get(i);
+            ApplicationInfo appInfo = packageInfo.applicationInfo;
+            String appName = withLabel ? labels[i] : null;
+            if (appInfo == null || (withLabel && appName == null)) {
+                metrics.rowSkipped();
+                continue;
+            }
+
+            out.beginObject();
+            if (withLabel) {
+                out.name("app_name").value(appName);
+            }
+            if (fields.includes("package_name")) {
+                out.name("package_name").value(packageInfo.packageName);
+            }
+            if (fields.includes("version_name")) {
+                out.name("version_name").value(packageInfo.versionName != null ? packageInfo.versionName : "");
+            }
+            if (fields.includes("version_code")) {
+                out.name("version_code").value(PackageInfoCompat.getLongVersionCode(packageInfo));
+            }
+            if (fields.includes("install_time")) {
+                out.name("install_time").value(packageInfo.firstInstallTime);
+            }
+            if (fields.includes("update_time")) {
+                out.name("update_time").value(packageInfo.lastUpdateTime);
+            }
+            if (fields.includes("formatted_install_time")) {
+                out.name("formatted_install_time");
+                TimestampFormatter.writeTo(packageInfo.firstInstallTime, out);
+            }
+            if (fields.includes("is_system_app")) {
+                out.name("is_system_app").value((appInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0);
+            }
+            if (fields.includes("enabled")) {
+                out.name("enabled").value(appInfo.enabled);
+            }
+            out.endObject();
+            metrics.rowWritten();
+        }
+        out.endArray();
+    }
+
+    /** Labels in package order; null where the label could not be loaded. */
+    private String[] resolveLabels(List<PackageInfo> packages) throws IOException {
+        String locale = Locale.getDefault().toLanguageTag();
+        AppLabelCache cache;
+        try {
+            cache = AppLabelCache.load(labelCacheFile, locale);
+        } catch (IOException e) {
+            // An unreadable cache only costs resolving every label again
+            cache = new AppLabelCache(locale);
+        }
+
+        String[] labels = new String[packages.size()];
+        List<Integer> misses = new ArrayList<>();
+        Set<String> installed = new HashSet<>();
+        for (int i = 0; i < packages.size(); i++) {
+            PackageInfo packageInfo = packages.get(i);
+            installed.add(packageInfo.packageName);
+            labels[i] = cache.get(packageInfo.packageName, packageInfo.lastUpdateTime);
+            if (labels[i] == null && packageInfo.applicationInfo != null) {
+                misses.add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(labelThreads, misses.size()));
+            try {
+                List<Future<String>> futures = new ArrayList<>(misses.size());
+                for (int i : misses) {
+                    ApplicationInfo appInfo = packages.get(i).applicationInfo;
+                    futures.add(pool.submit(() -> packageManager.getApplicationLabel(appInfo).toString()));
+                }
+                for (int m = 0; m < misses.size(); m++) {
+                    int i = misses.get(m);
+                    try {
+                        labels[i] = futures.get(m).get();
+                        cache.put(packages.get(i).packageName, packages.get(i).lastUpdateTime, labels[i]);
+                    } catch (ExecutionException e) {
+                        // Left null; the app is skipped as before
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading app labels");
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        cache.retainAll(installed);
+        if (cache.isChanged()) {
+            try {
+                cache.save(labelCacheFile);
+            } catch (IOException e) {
+                // The labels are resolved; the next export just resolves them again
+            }
+        }
+        return labels;
+    }
+}
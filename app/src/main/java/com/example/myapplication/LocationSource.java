@@ -0,0 +1,79 @@
+package com.example.myapplication;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.location.LocationManager;
+
+import androidx.core.app.ActivityCompat;
+
+import java.io.IOException;
+
+/** The last known GPS fix, if location permission was granted. */
+final class LocationSource implements DataSource {
+
+    private final Context context;
+    private final FieldSelection fields;
+
+    LocationSource(Context context, FieldSelection fields) {
+        this.context = context;
+        this.fields = fields;
+    }
+
+    @Override
+    public String getName() {
+        return "location_history";
+    }
+
+    @Override
+    public ExtractionEngine.Shape getShape() {
+        return ExtractionEngine.Shape.ARRAY;
+    }
+
+    @Override
+    public void write(JsonStreamWriter out, SourceMetrics metrics) throws IOException {
+        out.beginArray();
+
+        LocationManager locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        Location lastKnownLocation = null;
+        long query = metrics.queryStarted();
+        if (locationManager != null) {
+            try {
+                if (ActivityCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
+                    lastKnownLocation = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
+                }
+            } catch (Exception e) {
+                // Location not available
+            }
+        }
+        metrics.queryFinished(query);
+
+        if (lastKnownLocation != null) {
+            out.beginObject();
+            if (fields.includes("latitude")) {
+                out.name("latitude").value(lastKnownLocation.getLatitude());
+            }
+            if (fields.includes("longitude")) {
+                out.name("longitude").value(lastKnownLocation.getLongitude());
+            }
+            if (fields.includes("accuracy")) {
+                out.name("accuracy").value(lastKnownLocation.getAccuracy());
+            }
+            if (fields.includes("timestamp")) {
+                out.name("timestamp").value(lastKnownLocation.getTime());
+            }
+            if (fields.includes("formatted_time")) {
+                out.name("formatted_time");
+                TimestampFormatter.writeTo(lastKnownLocation.getTime(), out);
+            }
+            if (fields.includes("provider")) {
+                out.name("provider").value(lastKnownLocation.getProvider());
+            }
+            out.endObject();
+            metrics.rowWritten();
+        }
+
+        out.endArray();
+    }
+}
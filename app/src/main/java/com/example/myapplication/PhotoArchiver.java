@@ -0,0 +1,406 @@
+package com.example.myapplication;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streams every MediaStore image straight from its content URI into a ZIP, in a
+ * single pass, followed by a metadata JSON entry describing the archived photos.
+ * Photos found in the {@link PhotoIndex} are listed by reference to the archive
+ * that already holds them instead of being copied again.
+ *
+ * <p>Progress is checkpointed to a {@link PhotoJournal}: after a failure or the
+ * process being killed, archiving the same file again resumes at the last
+ * checkpoint instead of copying every photo again.
+ *
+ * <p>From API 26 on, stored photos are copied from their file descriptor through
+ * the writer's direct buffer instead of a content stream and heap arrays.
+ */
+final class PhotoArchiver {
+
+    static final class Result {
+        final int photoCount;
+        final int copiedCount;
+        final int referencedCount;
+        /** Photos handled by an earlier, interrupted run and not looked at again. */
+        final int resumedCount;
+        /** Bytes this run copied into the archive, photos and metadata, before compression. */
+        final long bytesCopied;
+        /** Bytes read only to hash photos that might already be archived. */
+        final long bytesHashed;
+        /** Bytes this run appended to the archive file. */
+        final long bytesWritten;
+
+        Result(int photoCount, int copiedCount, int referencedCount, int resumedCount,
+               long bytesCopied, long bytesHashed, long bytesWritten) {
+            this.photoCount = photoCount;
+            this.copiedCount = copiedCount;
+            this.referencedCount = referencedCount;
+            this.resumedCount = resumedCount;
+            this.bytesCopied = bytesCopied;
+            this.bytesHashed = bytesHashed;
+            this.bytesWritten = bytesWritten;
+        }
+    }
+
+    // A checkpoint syncs the archive, so space them out; at most this much work is redone after a crash
+    private static final long CHECKPOINT_BYTES = 128L * 1024 * 1024;
+    private static final int CHECKPOINT_PHOTOS = 1000;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ContentResolver contentResolver;
+    private final File spoolDir;
+    private final CompressionPolicy compressionPolicy;
+    private final int compressionThreads;
+    private final Tracer tracer;
+    private final FieldSelection metadataFields;
+    private final DateRange range;
+    private final int bufferSize;
+    private final byte[] hashBuffer;
+    private long bytesHashed;
+
+    /**
+     * @param metadataFields fields of each photo's metadata record; the archive
+     *                       references (copied file, entry, hash) are always written
+     * @param range          photos to archive, by DATE_TAKEN or else DATE_ADDED
+     * @param bufferSize     archive write buffer, see {@link ZipArchiveWriter#bufferSizeFor}
+     */
+    PhotoArchiver(ContentResolver contentResolver, File spoolDir,
+                  CompressionPolicy compressionPolicy, int compressionThreads, Tracer tracer,
+                  FieldSelection metadataFields, DateRange range, int bufferSize) {
+        this.contentResolver = contentResolver;
+        this.spoolDir = spoolDir;
+        this.compressionPolicy = compressionPolicy;
+        this.compressionThreads = compressionThreads;
+        this.tracer = tracer;
+        this.metadataFields = metadataFields;
+        this.range = range;
+        this.bufferSize = bufferSize;
+        this.hashBuffer = new byte[bufferSize];
+    }
+
+    /**
+     * @param journalFile   checkpoint journal; deleted once the archive is complete
+     * @param resume        state read from {@code journalFile} by an earlier run of the
+     *                      same {@code zipFile} with the same settings, or null to start
+     *                      a new archive
+     * @param photoIndex    photos already archived; updated with every photo copied
+     *                      here, and only worth saving if this call succeeds
+     * @param reuseArchived whether {@code photoIndex} was loaded to reference earlier
+     *                      archives; recorded in the journal
+     * @param progress      gets the photo count, photos handled and archive bytes
+     */
+    Result archive(File zipFile, String metadataEntryName, File journalFile, PhotoJournal.State resume,
+                   PhotoIndex photoIndex, boolean reuseArchived, ExportProgress.Task progress) throws IOException {
+        if (!spoolDir.exists() && !spoolDir.mkdirs()) {
+            throw new IOException("Cannot create spool directory " + spoolDir);
+        }
+        // Photo records are spooled while the images stream, then appended as the last entry
+        File metadataSpool = new File(spoolDir, "photos_metadata.part");
+        if (resume != null && (resume.checkpoint == null
+                || zipFile.length() < resume.checkpoint.getPosition()
+                || metadataSpool.length() < resume.metadataLength)) {
+            // Nothing durable to continue from
+            resume = null;
+        }
+        if (resume != null) {
+            try (RandomAccessFile spool = new RandomAccessFile(metadataSpool, "rw")) {
+                spool.setLength(resume.metadataLength);
+            }
+            for (PhotoIndex.Record record : resume.records) {
+                photoIndex.add(record);
+            }
+        }
+
+        Checkpoints checkpoints = new Checkpoints(resume);
+        long startPosition = resume != null ? resume.checkpoint.getPosition() : 0;
+        long bytesCopied;
+        bytesHashed = 0;
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(zipFile, compressionPolicy.getLevel(), compressionThreads,
+                     resume != null ? resume.checkpoint : null, bufferSize);
+             PhotoJournal journal = resume != null
+                     ? PhotoJournal.append(journalFile, resume)
+                     : PhotoJournal.create(journalFile, zipFile.getName(), metadataEntryName,
+                             range, metadataFields, reuseArchived);
+             FileOutputStream metadataFile = new FileOutputStream(metadataSpool, resume != null);
+             JsonStreamWriter metadata = new JsonStreamWriter(
+                     new BufferedOutputStream(metadataFile), "  ").setBaseDepth(1)) {
+            zip.setTracer(tracer);
+
+            ProviderQuery photoQuery = ExportSources.photoArchive(range).select(metadataFields,
+                    MediaStore.Images.Media._ID, MediaStore.Images.Media.DISPLAY_NAME,
+                    MediaStore.Images.Media.SIZE, MediaStore.Images.Media.MIME_TYPE);
+            RecordSchema schema = photoQuery.schema;
+            int idColumn = schema.columnIndex(MediaStore.Images.Media._ID);
+            int nameColumn = schema.columnIndex(MediaStore.Images.Media.DISPLAY_NAME);
+            int sizeColumn = schema.columnIndex(MediaStore.Images.Media.SIZE);
+            int mimeColumn = schema.columnIndex(MediaStore.Images.Media.MIME_TYPE);
+            int modifiedColumn = schema.columnIndex(MediaStore.Images.Media.DATE_MODIFIED);
+
+            if (resume != null) {
+                metadata.continueArray(resume.photoCount > 0);
+            } else {
+                metadata.beginArray();
+            }
+            Cursor photos;
+            try (Tracer.Section ignored = tracer.begin("query photos")) {
+                photos = photoQuery.query(contentResolver);
+            }
+            try (Cursor cursor = photos) {
+                if (cursor != null) {
+                    progress.setTotal(cursor.getCount());
+
+                    CursorRowReader reader = new CursorRowReader(cursor, schema);
+                    RowBuffer row = schema.newRowBuffer();
+                    while (cursor.moveToNext()) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            // Stopped by the service; the journal keeps everything up to the last checkpoint
+                            throw new InterruptedIOException("Photo export stopped");
+                        }
+                        if (!reader.read(row)) {
+                            continue;
+                        }
+                        long id;
+                        try {
+                            id = Long.parseLong(row.getString(idColumn));
+                        } catch (NumberFormatException e) {
+                            continue;
+                        }
+                        if (resume != null && resume.handledIds.contains(id)) {
+                            continue;
+                        }
+                        checkpoints.photoCount++;
+
+                        long size = row.getLong(sizeColumn);
+                        long dateModified = row.getLong(modifiedColumn);
+
+                        PhotoIndex.Record stored = photoIndex.findUnchanged(id, size, dateModified);
+                        if (stored == null && photoIndex.containsSize(size)) {
+                            // Same size as something archived: hash it before deciding to copy
+                            String sha256 = hashPhoto(id);
+                            PhotoIndex.Record copy = sha256 != null ? photoIndex.findByHash(sha256) : null;
+                            if (copy != null) {
+                                stored = new PhotoIndex.Record(id, size, dateModified, sha256, copy.archive, copy.entry);
+                                photoIndex.add(stored);
+                                checkpoints.addedRecords.add(stored);
+                            }
+                        }
+
+                        String copiedName = "";
+                        if (stored != null) {
+                            checkpoints.referencedCount++;
+                        } else {
+                            String entryName = "photo_" + id + "_" + row.getString(nameColumn);
+                            int method = compressionPolicy.methodFor(row.getString(mimeColumn));
+                            String sha256 = addPhoto(zip, id, entryName, method, size);
+                            if (sha256 != null) {
+                                stored = new PhotoIndex.Record(id, size, dateModified, sha256, zipFile.getName(), entryName);
+                                photoIndex.add(stored);
+                                checkpoints.addedRecords.add(stored);
+                                copiedName = entryName;
+                                checkpoints.copiedCount++;
+                            }
+                        }
+
+                        metadata.beginObject();
+                        schema.writeFields(row, metadata);
+                        metadata.name("copied_file_name").value(copiedName);
+                        metadata.name("archive_file").value(stored != null ? stored.archive : "");
+                        metadata.name("archive_entry").value(stored != null ? stored.entry : "");
+                        metadata.name("sha256").value(stored != null ? stored.sha256 : "");
+                        metadata.endObject();
+                        checkpoints.handledIds.add(id);
+
+                        if (checkpoints.isDue(zip)) {
+                            checkpoints.commit(zip, journal, metadata, metadataFile);
+                        }
+                        progress.setItems(checkpoints.photoCount);
+                        progress.setBytes(zip.getPosition());
+                    }
+                }
+            }
+            metadata.endArray();
+            metadata.close();
+
+            // Metadata is JSON text, so it is always worth deflating
+            try (Tracer.Section ignored = tracer.begin("write photo metadata")) {
+                JsonStreamWriter document = new JsonStreamWriter(
+                        zip.openEntry(metadataEntryName, ZipArchiveWriter.DEFLATED), "  ");
+                document.beginObject();
+                document.name("photos");
+                try (InputStream in = new BufferedInputStream(new FileInputStream(metadataSpool))) {
+                    document.rawValue(in);
+                }
+                document.name("total_photos").value(checkpoints.photoCount);
+                document.name("copied_photos").value(checkpoints.copiedCount);
+                document.name("referenced_photos").value(checkpoints.referencedCount);
+                document.name("export_timestamp").value(new Date().toString());
+                document.endObject();
+                document.close();
+            }
+            bytesCopied = zip.getBytesIn();
+        }
+
+        // Only a complete archive ends the journal; after a failure it is kept to resume from
+        journalFile.delete();
+        metadataSpool.delete();
+        spoolDir.delete();
+        return new Result(checkpoints.photoCount, checkpoints.copiedCount, checkpoints.referencedCount,
+                resume != null ? resume.photoCount : 0, bytesCopied, bytesHashed, zipFile.length() - startPosition);
+    }
+
+    /** Running counts, and what has been handled since the last checkpoint. */
+    private static final class Checkpoints {
+        int photoCount;
+        int copiedCount;
+        int referencedCount;
+        final List<Long> handledIds = new ArrayList<>();
+        final List<PhotoIndex.Record> addedRecords = new ArrayList<>();
+        long lastPosition;
+
+        Checkpoints(PhotoJournal.State resume) {
+            if (resume != null) {
+                photoCount = resume.photoCount;
+                copiedCount = resume.copiedCount;
+                referencedCount = resume.referencedCount;
+                lastPosition = resume.checkpoint.getPosition();
+            }
+        }
+
+        boolean isDue(ZipArchiveWriter zip) {
+            return handledIds.size() >= CHECKPOINT_PHOTOS || zip.getPosition() - lastPosition >= CHECKPOINT_BYTES;
+        }
+
+        // The archive and the spool go to storage before the journal points past them
+        void commit(ZipArchiveWriter zip, PhotoJournal journal, JsonStreamWriter metadata,
+                    FileOutputStream metadataFile) throws IOException {
+            metadata.flush();
+            metadataFile.getFD().sync();
+            long metadataLength = metadataFile.getChannel().position();
+            ZipArchiveWriter.Checkpoint checkpoint = zip.sync();
+            journal.commit(checkpoint, metadataLength, photoCount, copiedCount, referencedCount,
+                    handledIds, addedRecords);
+            handledIds.clear();
+            addedRecords.clear();
+            lastPosition = checkpoint.getPosition();
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the archived bytes, or null if the photo could not be read
+     */
+    private String addPhoto(ZipArchiveWriter zip, long id, String entryName, int method, long size)
+            throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && method == ZipArchiveWriter.STORED) {
+            ParcelFileDescriptor descriptor = openPhotoDescriptor(id);
+            if (descriptor == null) {
+                return null;
+            }
+            MessageDigest digest = newDigest();
+            try (Tracer.Section ignored = tracer.begin("copy photo");
+                 FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+                 FileChannel channel = in.getChannel()) {
+                zip.addEntry(entryName, method, channel, size, digest::update);
+                return toHex(digest.digest());
+            } catch (ZipArchiveWriter.SourceException e) {
+                return null;
+            }
+        }
+
+        InputStream in = openPhoto(id);
+        if (in == null) {
+            return null;
+        }
+
+        MessageDigest digest = newDigest();
+        try (Tracer.Section ignored = tracer.begin("copy photo")) {
+            zip.addEntry(entryName, method, new DigestInputStream(in, digest), size);
+            return toHex(digest.digest());
+        } catch (ZipArchiveWriter.SourceException e) {
+            // Read failed part way; the writer already rolled the entry back
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    private String hashPhoto(long id) throws IOException {
+        InputStream in = openPhoto(id);
+        if (in == null) {
+            return null;
+        }
+
+        MessageDigest digest = newDigest();
+        try (Tracer.Section ignored = tracer.begin("hash photo")) {
+            int read;
+            while ((read = in.read(hashBuffer)) != -1) {
+                digest.update(hashBuffer, 0, read);
+                bytesHashed += read;
+            }
+            return toHex(digest.digest());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            in.close();
+        }
+    }
+
+    private InputStream openPhoto(long id) {
+        try {
+            Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+            return contentResolver.openInputStream(uri);
+        } catch (FileNotFoundException | SecurityException e) {
+            // Missing or unreadable image, recorded in metadata without an archive entry
+            return null;
+        }
+    }
+
+    private ParcelFileDescriptor openPhotoDescriptor(long id) {
+        try {
+            Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+            return contentResolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is a required algorithm", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.myapplication;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.provider.BaseColumns;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A content provider query paired with the schema that maps its rows to records.
+ *
+ * <p>A paged query reads the table in keyset pages: each page asks for the rows
+ * after the last one seen, ordered by the page column and then _id, so every
+ * page is a short-lived cursor of bounded size no matter how large the table is.
+ */
+final class ProviderQuery {
+
+    interface RowHandler {
+        void onRow(RowBuffer row) throws IOException;
+    }
+
+    final Uri uri;
+    final RecordSchema schema;
+    final String selection;
+    final String[] selectionArgs;
+    final String sortOrder;
+    /** Ever-increasing integer column used for incremental exports, or null. */
+    final String watermarkColumn;
+    /** Integer column pages are ordered by (newest first), or null to read in one cursor. */
+    final String pageColumn;
+    final int pageSize;
+
+    ProviderQuery(Uri uri, RecordSchema schema, String selection, String[] selectionArgs, String sortOrder) {
+        this(uri, schema, selection, selectionArgs, sortOrder, null);
+    }
+
+    ProviderQuery(Uri uri, RecordSchema schema, String selection, String[] selectionArgs, String sortOrder,
+                  String watermarkColumn) {
+        this(uri, schema, selection, selectionArgs, sortOrder, watermarkColumn, null, 0);
+    }
+
+    private ProviderQuery(Uri uri, RecordSchema schema, String selection, String[] selectionArgs, String sortOrder,
+                          String watermarkColumn, String pageColumn, int pageSize) {
+        this.uri = uri;
+        this.schema = schema;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.sortOrder = sortOrder;
+        this.watermarkColumn = watermarkColumn;
+        this.pageColumn = pageColumn;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Narrows the query to rows whose watermark column is above {@code watermark}.
+     * Returns this query unchanged if it has no watermark column or {@code watermark} is not positive.
+     */
+    ProviderQuery after(long watermark) {
+        if (watermarkColumn == null || watermark <= 0) {
+            return this;
+        }
+        return new ProviderQuery(uri, schema,
+                and(selection, watermarkColumn + " > ?"),
+                append(selectionArgs, Long.toString(watermark)),
+                sortOrder, watermarkColumn, pageColumn, pageSize);
+    }
+
+    /**
+     * Narrows the query to rows whose {@code dateColumn}, in epoch millis, falls in
+     * {@code range}. The provider applies the bounds, so rows outside never cross
+     * the process boundary.
+     */
+    ProviderQuery within(String dateColumn, DateRange range) {
+        String clause = range.selection(dateColumn);
+        if (clause == null) {
+            return this;
+        }
+        String[] args = selectionArgs;
+        for (String arg : range.selectionArgs()) {
+            args = append(args, arg);
+        }
+        return new ProviderQuery(uri, schema, and(selection, clause), args,
+                sortOrder, watermarkColumn, pageColumn, pageSize);
+    }
+
+    /**
+     * Reads {@link #forEachRow} in pages of {@code pageSize} rows ordered by
+     * {@code orderColumn} descending, then _id descending. The schema must read
+     * both columns.
+     */
+    ProviderQuery paged(String orderColumn, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        if (schema.columnIndex(orderColumn) < 0 || schema.columnIndex(BaseColumns._ID) < 0) {
+            throw new IllegalArgumentException("Schema must read " + orderColumn + " and " + BaseColumns._ID);
+        }
+        return new ProviderQuery(uri, schema, selection, selectionArgs, sortOrder,
+                watermarkColumn, orderColumn, pageSize);
+    }
+
+    /**
+     * Narrows the projection and the records to the selected {@code fields}.
+     * The paging and watermark columns are still read, but only written if selected.
+     *
+     * @param requiredColumns further columns the caller reads from the rows
+     */
+    ProviderQuery select(FieldSelection fields, String... requiredColumns) {
+        List<String> required = new ArrayList<>(Arrays.asList(requiredColumns));
+        for (String column : new String[]{watermarkColumn, pageColumn, pageColumn != null ? BaseColumns._ID : null}) {
+            if (column != null) {
+                required.add(column);
+            }
+        }
+        return new ProviderQuery(uri, schema.select(fields, required.toArray(new String[0])),
+                selection, selectionArgs, sortOrder, watermarkColumn, pageColumn, pageSize);
+    }
+
+    /** A single unpaged cursor over the whole query. */
+    Cursor query(ContentResolver contentResolver) {
+        return contentResolver.query(uri, schema.getProjection(), selection, selectionArgs, sortOrder);
+    }
+
+    /**
+     * Passes every readable row to {@code handler}, page by page if the query is paged,
+     * counting queries, handled rows and unreadable rows into {@code metrics} and
+     * tracing each query apart from the iteration over its rows.
+     *
+     * @return the highest watermark column value handled, or -1 if there is no
+     *         watermark column or no rows were handled
+     */
+    long forEachRow(ContentResolver contentResolver, RowHandler handler, SourceMetrics metrics, Tracer tracer)
+            throws IOException {
+        Scan scan = new Scan(handler, metrics, tracer);
+        if (pageColumn == null) {
+            long query = metrics.queryStarted();
+            Cursor cursor;
+            try (Tracer.Section ignored = tracer.begin("query")) {
+                cursor = query(contentResolver);
+            }
+            metrics.queryFinished(query);
+            scan.readPage(cursor);
+            return scan.highest;
+        }
+
+        String pageOrder = pageColumn + " DESC, " + BaseColumns._ID + " DESC";
+        boolean limitInSortOrder = true;
+        while (true) {
+            String pageSelection = and(selection, scan.keysetClause());
+            String[] pageArgs = scan.appendKeysetArgs(selectionArgs);
+            Cursor cursor;
+            long query = metrics.queryStarted();
+            try (Tracer.Section ignored = tracer.begin("query page")) {
+                if (limitInSortOrder) {
+                    try {
+                        cursor = contentResolver.query(uri, schema.getProjection(), pageSelection, pageArgs,
+                                pageOrder + " LIMIT " + pageSize);
+                    } catch (IllegalArgumentException e) {
+                        // Providers with a strict SQL grammar reject LIMIT in the sort order
+                        limitInSortOrder = false;
+                        continue;
+                    }
+                } else {
+                    cursor = queryWithLimitArgument(contentResolver, pageSelection, pageArgs, pageOrder);
+                }
+            }
+            metrics.queryFinished(query);
+            // A provider that ignores the limit just returns everything as one page
+            if (scan.readPage(cursor) < pageSize) {
+                return scan.highest;
+            }
+        }
+    }
+
+    /**
+     * Writes every row as a JSON array of records, skipping rows that fail to read.
+     *
+     * @return the highest watermark column value written, or -1 if there is no
+     *         watermark column or no rows were written
+     */
+    long writeRecords(ContentResolver contentResolver, JsonStreamWriter out, SourceMetrics metrics, Tracer tracer)
+            throws IOException {
+        out.beginArray();
+        long highest = forEachRow(contentResolver, row -> schema.write(row, out), metrics, tracer);
+        out.endArray();
+        return highest;
+    }
+
+    /**
+     * Writes every row in the binary format of {@link ColumnarWriter}, skipping rows
+     * that fail to read, and closes {@code out}.
+     *
+     * @return the highest watermark column value written, or -1 if there is no
+     *         watermark column or no rows were written
+     */
+    long writeColumnar(ContentResolver contentResolver, OutputStream out, SourceMetrics metrics, Tracer tracer)
+            throws IOException {
+        try (ColumnarWriter writer = new ColumnarWriter(out, schema)) {
+            return forEachRow(contentResolver, writer::write, metrics, tracer);
+        }
+    }
+
+    private Cursor queryWithLimitArgument(ContentResolver contentResolver, String pageSelection,
+                                          String[] pageArgs, String pageOrder) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return contentResolver.query(uri, schema.getProjection(), pageSelection, pageArgs, pageOrder);
+        }
+        Bundle queryArgs = new Bundle();
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, pageSelection);
+        queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, pageArgs);
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, pageOrder);
+        queryArgs.putString(ContentResolver.QUERY_ARG_SQL_LIMIT, Integer.toString(pageSize));
+        return contentResolver.query(uri, schema.getProjection(), queryArgs, null);
+    }
+
+    /** Reads pages and remembers the key of the last row seen. */
+    private final class Scan {
+        final RowHandler handler;
+        final SourceMetrics metrics;
+        final Tracer tracer;
+        final RowBuffer row = schema.newRowBuffer();
+        long highest = -1;
+
+        boolean started;
+        boolean lastKeyNull;
+        long lastKey;
+        long lastId;
+
+        Scan(RowHandler handler, SourceMetrics metrics, Tracer tracer) {
+            this.handler = handler;
+            this.metrics = metrics;
+            this.tracer = tracer;
+        }
+
+        /** @return rows in the page, including ones that could not be read */
+        int readPage(Cursor cursor) throws IOException {
+            if (cursor == null) {
+                return 0;
+            }
+            // Cursor iteration and record encoding: providers fill their window lazily here
+            try (Tracer.Section ignored = tracer.begin("read page");
+                 Cursor page = cursor) {
+                CursorRowReader reader = new CursorRowReader(page, schema);
+                int watermarkIndex = watermarkColumn != null ? page.getColumnIndex(watermarkColumn) : -1;
+                int keyIndex = pageColumn != null ? page.getColumnIndex(pageColumn) : -1;
+                int idIndex = pageColumn != null ? page.getColumnIndex(BaseColumns._ID) : -1;
+                if (pageColumn != null && (keyIndex < 0 || idIndex < 0)) {
+                    // Without the key every page would repeat the first one
+                    throw new IOException("Provider for " + uri + " did not return " + pageColumn + " and _id");
+                }
+                int count = 0;
+                while (page.moveToNext()) {
+                    count++;
+                    if (pageColumn != null) {
+                        started = true;
+                        lastKeyNull = page.isNull(keyIndex);
+                        lastKey = page.getLong(keyIndex);
+                        lastId = page.getLong(idIndex);
+                    }
+                    if (reader.read(row)) {
+                        handler.onRow(row);
+                        metrics.rowWritten();
+                        if (watermarkIndex >= 0) {
+                            highest = Math.max(highest, page.getLong(watermarkIndex));
+                        }
+                    } else {
+                        metrics.rowSkipped();
+                    }
+                }
+                return count;
+            }
+        }
+
+        // SQLite sorts NULL below every value, so NULL keys come last in descending order
+        String keysetClause() {
+            if (!started) {
+                return null;
+            }
+            if (lastKeyNull) {
+                return "(" + pageColumn + " IS NULL AND " + BaseColumns._ID + " < ?)";
+            }
+            return "(" + pageColumn + " < ? OR (" + pageColumn + " = ? AND " + BaseColumns._ID + " < ?) OR "
+                    + pageColumn + " IS NULL)";
+        }
+
+        String[] appendKeysetArgs(String[] args) {
+            if (!started) {
+                return args;
+            }
+            if (lastKeyNull) {
+                return append(args, Long.toString(lastId));
+            }
+            String key = Long.toString(lastKey);
+            return append(append(append(args, key), key), Long.toString(lastId));
+        }
+    }
+
+    private static String and(String selection, String clause) {
+        if (clause == null) {
+            return selection;
+        }
+        return selection == null ? clause : "(" + selection + ") AND " + clause;
+    }
+
+    private static String[] append(String[] args, String arg) {
+        if (args == null) {
+            return new String[]{arg};
+        }
+        String[] appended = Arrays.copyOf(args, args.length + 1);
+        appended[args.length] = arg;
+        return appended;
+    }
+}
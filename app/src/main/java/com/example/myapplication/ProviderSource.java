@@ -0,0 +1,49 @@
+package com.example.myapplication;
+
+import android.content.ContentResolver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A cursor-backed section read through a {@link ProviderQuery}: SMS, call log,
+ * calendar events and media metadata. In a delta run only rows above the section's
+ * watermark are read, and the highest one written is handed back to the run.
+ */
+final class ProviderSource implements DataSource {
+
+    private final ContentResolver contentResolver;
+    private final String name;
+    private final ProviderQuery query;
+    private final IncrementalExport.Run run;
+    private final Tracer tracer;
+
+    ProviderSource(ContentResolver contentResolver, String name, ProviderQuery query,
+                   IncrementalExport.Run run, Tracer tracer) {
+        this.contentResolver = contentResolver;
+        this.name = name;
+        this.query = query;
+        this.run = run;
+        this.tracer = tracer;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ExtractionEngine.Shape getShape() {
+        return ExtractionEngine.Shape.ARRAY;
+    }
+
+    @Override
+    public void write(JsonStreamWriter out, SourceMetrics metrics) throws IOException {
+        run.reached(name, query.after(run.after(name)).writeRecords(contentResolver, out, metrics, tracer));
+    }
+
+    /** Writes the section in the binary format of {@link ColumnarWriter} instead. */
+    void writeColumnar(OutputStream out, SourceMetrics metrics) throws IOException {
+        run.reached(name, query.after(run.after(name)).writeColumnar(contentResolver, out, metrics, tracer));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.myapplication;
+
+import android.os.Trace;
+
+/**
+ * Emits every section as an {@link Trace} section, so it shows up in a Perfetto
+ * or systrace capture of the device, and also passes it to an in-app recorder.
+ */
+final class SystemTracer implements Tracer {
+
+    // Longer names are rejected by Trace.beginSection
+    private static final int MAX_NAME_LENGTH = 127;
+
+    private final Tracer recorder;
+
+    /** @param recorder in-app recorder, or {@link Tracer#NONE} for system tracing only */
+    SystemTracer(Tracer recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public Section begin(String name) {
+        Trace.beginSection(name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name);
+        Section recorded = recorder.begin(name);
+        return () -> {
+            recorded.close();
+            Trace.endSection();
+        };
+    }
+}
@@ -0,0 +1,28 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+}
+
+// ./gradlew :benchmark:jmh
+// Narrow a run with -Pjmh.includes=<regex>; results land in build/results/jmh/results.json
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    // Allocation rate (gc.alloc.rate.norm) next to throughput, so allocation regressions show up
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    if (project.hasProperty("jmh.includes")) {
+        includes.add(project.property("jmh.includes").toString())
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.myapplication.benchmark;
+
+import java.io.OutputStream;
+
+/** Discards output, keeping only the byte count, so benchmarks measure encoding and not I/O. */
+final class CountingOutputStream extends OutputStream {
+
+    long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.ExtractionEngine;
+import com.example.myapplication.JsonStreamWriter;
+import com.example.myapplication.RecordSchema;
+import com.example.myapplication.RowBuffer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full document of several cursor-backed sections through the engine,
+ * including spooling each section to disk and splicing the parts in order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExtractionEngineBenchmark {
+
+    private static final int SOURCES = 4;
+
+    @Param({"10000", "250000"})
+    public int rowsPerSource;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private final SyntheticCursor[] cursors = new SyntheticCursor[SOURCES];
+    private File spoolRoot;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long rowsWritten;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rowsWritten = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < SOURCES; i++) {
+            cursors[i] = SyntheticCursor.messages(rowsPerSource, i);
+        }
+        spoolRoot = Files.createTempDirectory("engine-benchmark").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        spoolRoot.delete();
+    }
+
+    @Benchmark
+    public long runEngine(Counters counters) throws IOException, InterruptedException {
+        ExtractionEngine engine = new ExtractionEngine(parallelism, new File(spoolRoot, "spool"), "  ");
+        for (int i = 0; i < SOURCES; i++) {
+            SyntheticCursor cursor = cursors[i];
+            engine.addSource("section_" + i, ExtractionEngine.Shape.ARRAY, out -> writeSection(cursor, out));
+        }
+        CountingOutputStream sink = new CountingOutputStream();
+        try (JsonStreamWriter out = new JsonStreamWriter(sink, "  ")) {
+            engine.run(out, null);
+        }
+        counters.rowsWritten += (long) SOURCES * rowsPerSource;
+        return sink.count;
+    }
+
+    // Each source gets its own cursor, so the shared position is never read concurrently
+    private static void writeSection(SyntheticCursor cursor, JsonStreamWriter out) throws IOException {
+        RecordSchema schema = cursor.getSchema();
+        RowBuffer row = schema.newRowBuffer();
+        out.beginArray();
+        cursor.moveToStart();
+        while (cursor.moveToNext()) {
+            cursor.read(row);
+            schema.write(row, out);
+        }
+        out.endArray();
+    }
+}
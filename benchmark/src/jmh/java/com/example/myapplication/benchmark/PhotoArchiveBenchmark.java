@@ -0,0 +1,96 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.ZipArchiveWriter;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a whole photo archive per operation. The default set is 512 MB; pass
+ * {@code -p totalMb=4096} (or more) for multi-GB and ZIP64-sized runs. Reports
+ * photos/s and input MB/s through the auxiliary counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 20)
+@Measurement(iterations = 3, time = 20)
+public class PhotoArchiveBenchmark {
+
+    @Param({"512"})
+    public int totalMb;
+
+    @Param({"3"})
+    public int photoMb;
+
+    /** "jpeg" is incompressible, "raw" deflates to roughly half. */
+    @Param({"jpeg", "raw"})
+    public String content;
+
+    @Param({"STORED", "DEFLATED"})
+    public String method;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private byte[] block;
+    private File archive;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long photos;
+        public long inputMegabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            photos = 0;
+            inputMegabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        block = content.equals("raw") ? SyntheticPhotoStream.rawBlock(3) : SyntheticPhotoStream.compressedBlock(3);
+        archive = File.createTempFile("photo-benchmark", ".zip");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        archive.delete();
+    }
+
+    @Benchmark
+    public long writeArchive(Counters counters) throws IOException {
+        int zipMethod = method.equals("STORED") ? ZipArchiveWriter.STORED : ZipArchiveWriter.DEFLATED;
+        long photoBytes = photoMb * 1024L * 1024L;
+        int photoCount = (int) Math.max(1, totalMb / photoMb);
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(archive, Deflater.DEFAULT_COMPRESSION, threads)) {
+            for (int i = 0; i < photoCount; i++) {
+                try (InputStream in = SyntheticPhotoStream.open(block, photoBytes, i * 7919)) {
+                    zip.addEntry("photo_" + i + ".jpg", zipMethod, in, photoBytes);
+                }
+            }
+            counters.photos += photoCount;
+            counters.inputMegabytes += photoCount * (long) photoMb;
+            return zip.getPosition();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.JsonStreamWriter;
+import com.example.myapplication.RecordSchema;
+import com.example.myapplication.RowBuffer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping plus JSON encoding of a cursor-backed section, as the SMS export
+ * does it. Reports rows/s and MB/s of JSON through the auxiliary counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecordExportBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"  ", ""})
+    public String indent;
+
+    private SyntheticCursor cursor;
+    private RecordSchema schema;
+    private RowBuffer row;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long rowsWritten;
+        public long jsonBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rowsWritten = 0;
+            jsonBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cursor = SyntheticCursor.messages(rows, 42);
+        schema = cursor.getSchema();
+        row = schema.newRowBuffer();
+    }
+
+    @Benchmark
+    public long writeMessages(Counters counters) throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        JsonStreamWriter out = new JsonStreamWriter(sink, indent.isEmpty() ? null : indent);
+        out.beginArray();
+        cursor.moveToStart();
+        while (cursor.moveToNext()) {
+            cursor.read(row);
+            schema.write(row, out);
+        }
+        out.endArray();
+        out.close();
+
+        counters.rowsWritten += cursor.getCount();
+        counters.jsonBytes += sink.count;
+        return sink.count;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.RecordSchema;
+import com.example.myapplication.RowBuffer;
+
+import java.util.Random;
+
+/**
+ * In-memory stand-in for a provider cursor. Rows are held column by column and
+ * copied into a {@link RowBuffer} the way the app's cursor reader does, so a
+ * benchmark measures row mapping and serialization without a device.
+ */
+final class SyntheticCursor {
+
+    /** Same shape as the app's SMS export, using the provider's column names. */
+    static final RecordSchema MESSAGE_SCHEMA = RecordSchema.builder()
+            .string("id", "_id")
+            .string("address", "address")
+            .string("body", "body")
+            .number("date", "date")
+            .date("formatted_date", "date")
+            .label("type", "type", SyntheticCursor::messageType)
+            .flag("read", "read")
+            .build();
+
+    private static final int DISTINCT_BODIES = 4096;
+    private static final int DISTINCT_ADDRESSES = 512;
+    private static final String[] WORDS = {
+            "ok", "see", "you", "tomorrow", "at", "the", "station", "thanks!", "call", "me",
+            "when", "you're", "free", "\"quoted\"", "line\nbreak", "café", "你好", "😀"
+    };
+
+    private final RecordSchema schema;
+    private final int rowCount;
+    private final long[][] longs;
+    private final String[][] strings;
+    private int position = -1;
+
+    private SyntheticCursor(RecordSchema schema, int rowCount) {
+        this.schema = schema;
+        this.rowCount = rowCount;
+        longs = new long[schema.getColumnCount()][];
+        strings = new String[schema.getColumnCount()][];
+    }
+
+    /**
+     * Messages with realistic field sizes: bodies of a few to a few hundred
+     * characters including escapes and non-ASCII text, dates a few minutes apart.
+     */
+    static SyntheticCursor messages(int rowCount, long seed) {
+        Random random = new Random(seed);
+        SyntheticCursor cursor = new SyntheticCursor(MESSAGE_SCHEMA, rowCount);
+
+        // Bodies and addresses come from pools so a million rows fit in a small heap
+        String[] bodies = new String[DISTINCT_BODIES];
+        for (int i = 0; i < bodies.length; i++) {
+            StringBuilder body = new StringBuilder();
+            int words = 2 + random.nextInt(random.nextInt(10) == 0 ? 60 : 15);
+            for (int w = 0; w < words; w++) {
+                body.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            bodies[i] = body.toString();
+        }
+        String[] addresses = new String[DISTINCT_ADDRESSES];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = "+1555" + (1000000 + random.nextInt(9000000));
+        }
+
+        String[] ids = cursor.stringColumn("_id");
+        String[] addressColumn = cursor.stringColumn("address");
+        String[] bodyColumn = cursor.stringColumn("body");
+        long[] dates = cursor.longColumn("date");
+        long[] types = cursor.longColumn("type");
+        long[] read = cursor.longColumn("read");
+        long date = 1735689600000L;
+        for (int i = 0; i < rowCount; i++) {
+            ids[i] = Integer.toString(rowCount - i);
+            addressColumn[i] = addresses[random.nextInt(addresses.length)];
+            bodyColumn[i] = random.nextInt(50) == 0 ? null : bodies[random.nextInt(bodies.length)];
+            date -= random.nextInt(600_000);
+            dates[i] = date;
+            types[i] = 1 + random.nextInt(2);
+            read[i] = random.nextInt(10) == 0 ? 0 : 1;
+        }
+        return cursor;
+    }
+
+    RecordSchema getSchema() {
+        return schema;
+    }
+
+    int getCount() {
+        return rowCount;
+    }
+
+    void moveToStart() {
+        position = -1;
+    }
+
+    boolean moveToNext() {
+        return ++position < rowCount;
+    }
+
+    void read(RowBuffer row) {
+        for (int column = 0; column < longs.length; column++) {
+            if (longs[column] != null) {
+                row.setLong(column, longs[column][position]);
+            } else {
+                row.setString(column, strings[column][position]);
+            }
+        }
+    }
+
+    private long[] longColumn(String name) {
+        int column = schema.columnIndex(name);
+        longs[column] = new long[rowCount];
+        return longs[column];
+    }
+
+    private String[] stringColumn(String name) {
+        int column = schema.columnIndex(name);
+        strings[column] = new String[rowCount];
+        return strings[column];
+    }
+
+    private static String messageType(int type) {
+        return type == 1 ? "RECEIVED" : type == 2 ? "SENT" : "UNKNOWN";
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.myapplication.benchmark;
+
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * Photo-sized input generated on the fly from a shared block, so multi-GB
+ * photo sets need no disk space or heap to read from.
+ */
+final class SyntheticPhotoStream extends InputStream {
+
+    private static final int BLOCK_SIZE = 1024 * 1024;
+
+    private final byte[] block;
+    private long remaining;
+    private long position;
+
+    private SyntheticPhotoStream(byte[] block, long length, long start) {
+        this.block = block;
+        this.remaining = length;
+        this.position = start;
+    }
+
+    /**
+     * Random bytes, as incompressible as JPEG or HEIC data. Repeats are a block
+     * apart, far outside the deflate window.
+     */
+    static byte[] compressedBlock(long seed) {
+        byte[] block = new byte[BLOCK_SIZE];
+        new Random(seed).nextBytes(block);
+        return block;
+    }
+
+    /** Smooth gradients with noise, compressing roughly like an uncompressed bitmap. */
+    static byte[] rawBlock(long seed) {
+        Random random = new Random(seed);
+        byte[] block = new byte[BLOCK_SIZE];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) ((i / 3 + (i >> 12)) + random.nextInt(4));
+        }
+        return block;
+    }
+
+    /** @param offset where in the block this photo starts, so photos differ */
+    static SyntheticPhotoStream open(byte[] block, long length, int offset) {
+        return new SyntheticPhotoStream(block, length, Math.floorMod(offset, block.length));
+    }
+
+    @Override
+    public int read() {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int index = (int) (position % block.length);
+        int count = (int) Math.min(Math.min(len, block.length - index), remaining);
+        System.arraycopy(block, index, b, off, count);
+        position += count;
+        remaining -= count;
+        return count;
+    }
+}
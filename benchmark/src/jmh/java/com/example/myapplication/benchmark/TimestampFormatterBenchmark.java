@@ -0,0 +1,61 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.TimestampFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timestamp formatting against the SimpleDateFormat it replaced, over
+ * timestamps a few minutes apart as in a message or call history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimestampFormatterBenchmark {
+
+    private static final int BATCH = 4096;
+
+    private final long[] timestamps = new long[BATCH];
+    private SimpleDateFormat simpleDateFormat;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        long millis = 1735689600000L;
+        for (int i = 0; i < BATCH; i++) {
+            millis -= random.nextInt(600_000);
+            timestamps[i] = millis;
+        }
+        simpleDateFormat = new SimpleDateFormat(TimestampFormatter.PATTERN, Locale.getDefault());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void timestampFormatter(Blackhole blackhole) {
+        for (long millis : timestamps) {
+            blackhole.consume(TimestampFormatter.format(millis));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void simpleDateFormat(Blackhole blackhole) {
+        for (long millis : timestamps) {
+            blackhole.consume(simpleDateFormat.format(new Date(millis)));
+        }
+    }
+}
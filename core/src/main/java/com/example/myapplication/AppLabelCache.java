@@ -0,0 +1,128 @@
+package com.example.myapplication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Application labels from earlier exports, so a repeat export only asks the
+ * package manager for apps installed or updated since; resolving a label can
+ * mean loading the other app's resources. A label is reused while the
+ * package's last update time is unchanged, and only in the locale it was
+ * resolved in. Not thread safe.
+ */
+public final class AppLabelCache {
+
+    private static final int MAGIC = 0x414C424C; // "ALBL"
+    private static final int VERSION = 1;
+
+    private static final class Label {
+        final long lastUpdateTime;
+        final String label;
+
+        Label(long lastUpdateTime, String label) {
+            this.lastUpdateTime = lastUpdateTime;
+            this.label = label;
+        }
+    }
+
+    private final String locale;
+    private final Map<String, Label> labels = new HashMap<>();
+    private boolean changed;
+
+    public AppLabelCache(String locale) {
+        this.locale = locale;
+    }
+
+    /**
+     * Reads a cache saved by {@link #save}. A missing file, or one saved in
+     * another locale, gives an empty cache.
+     */
+    public static AppLabelCache load(File file, String locale) throws IOException {
+        AppLabelCache cache = new AppLabelCache(locale);
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return cache;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unrecognised label cache " + file);
+            }
+            if (!in.readUTF().equals(locale)) {
+                cache.changed = true;
+                return cache;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String packageName = in.readUTF();
+                long lastUpdateTime = in.readLong();
+                cache.labels.put(packageName, new Label(lastUpdateTime, in.readUTF()));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated label cache " + file, e);
+        } finally {
+            in.close();
+        }
+        return cache;
+    }
+
+    /** Writes the cache through a temporary file, so a crash never leaves it half written. */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(locale);
+            out.writeInt(labels.size());
+            for (Map.Entry<String, Label> entry : labels.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().lastUpdateTime);
+                out.writeUTF(entry.getValue().label);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+        changed = false;
+    }
+
+    /** The cached label, or null if the package is new or was updated since. */
+    public String get(String packageName, long lastUpdateTime) {
+        Label label = labels.get(packageName);
+        return label != null && label.lastUpdateTime == lastUpdateTime ? label.label : null;
+    }
+
+    public void put(String packageName, long lastUpdateTime, String label) {
+        labels.put(packageName, new Label(lastUpdateTime, label));
+        changed = true;
+    }
+
+    /** Drops the labels of packages that are no longer installed. */
+    public void retainAll(Collection<String> packageNames) {
+        if (labels.keySet().retainAll(packageNames)) {
+            changed = true;
+        }
+    }
+
+    /** Whether there is anything to {@link #save} since loading. */
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public int size() {
+        return labels.size();
+    }
+}
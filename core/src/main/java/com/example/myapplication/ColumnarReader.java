@@ -0,0 +1,220 @@
+package com.example.myapplication;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a file written by {@link ColumnarWriter} one row at a time. Rows are
+ * decoded a block at a time into typed arrays, so {@link #getLong} and
+ * {@link #getString} are plain array reads.
+ *
+ * <pre>
+ * try (ColumnarReader reader = new ColumnarReader(in)) {
+ *     int date = reader.columnIndex("date");
+ *     while (reader.next()) {
+ *         long millis = reader.getLong(date);
+ *     }
+ * }
+ * </pre>
+ */
+public final class ColumnarReader implements Closeable {
+
+    private final DataInputStream in;
+    private final String[] names;
+    private final RecordSchema.ColumnType[] types;
+    private final long[][] longs;
+    private final String[][] strings;
+    private int blockRows;
+    private int row = -1;
+    private long rowsRead;
+    private boolean finished;
+
+    public ColumnarReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != ColumnarWriter.MAGIC) {
+            throw new IOException("Not a columnar export");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != ColumnarWriter.VERSION) {
+            throw new IOException("Unsupported columnar version " + version);
+        }
+        int columnCount = (int) readVarint(this.in);
+        names = new String[columnCount];
+        types = new RecordSchema.ColumnType[columnCount];
+        longs = new long[columnCount][];
+        strings = new String[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = this.in.readUTF();
+            int type = this.in.readUnsignedByte();
+            if (type == ColumnarWriter.TYPE_LONG) {
+                types[i] = RecordSchema.ColumnType.LONG;
+                longs[i] = new long[ColumnarWriter.BLOCK_ROWS];
+            } else if (type == ColumnarWriter.TYPE_STRING) {
+                types[i] = RecordSchema.ColumnType.STRING;
+                strings[i] = new String[ColumnarWriter.BLOCK_ROWS];
+            } else {
+                throw new IOException("Unknown column type " + type);
+            }
+        }
+    }
+
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    public RecordSchema.ColumnType getColumnType(int column) {
+        return types[column];
+    }
+
+    /** Position of {@code name} among the columns, or -1 if the file has no such column. */
+    public int columnIndex(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Moves to the next row; false once every row has been read. */
+    public boolean next() throws IOException {
+        if (++row < blockRows) {
+            return true;
+        }
+        if (finished || !readBlock()) {
+            return false;
+        }
+        row = 0;
+        return true;
+    }
+
+    public long getLong(int column) {
+        return longs[column][row];
+    }
+
+    /** @return the value, or null if the column was null in this row */
+    public String getString(int column) {
+        return strings[column][row];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        int rows = (int) readVarint(in);
+        if (rows == 0) {
+            long total = readVarint(in);
+            if (total != rowsRead) {
+                throw new IOException("Trailer says " + total + " rows but " + rowsRead + " were read");
+            }
+            finished = true;
+            blockRows = 0;
+            return false;
+        }
+        if (rows > ColumnarWriter.BLOCK_ROWS) {
+            throw new IOException("Corrupt block of " + rows + " rows");
+        }
+        for (int i = 0; i < names.length; i++) {
+            int encoding = in.readUnsignedByte();
+            // Byte length of the run, for readers that skip columns; every run is decoded here
+            readVarint(in);
+            if (longs[i] != null) {
+                readLongs(encoding, longs[i], rows);
+            } else {
+                readStrings(encoding, strings[i], rows);
+            }
+        }
+        blockRows = rows;
+        rowsRead += rows;
+        return true;
+    }
+
+    private void readLongs(int encoding, long[] values, int rows) throws IOException {
+        switch (encoding) {
+            case ColumnarWriter.ENCODING_CONSTANT: {
+                long value = unzigzag(readVarint(in));
+                for (int i = 0; i < rows; i++) {
+                    values[i] = value;
+                }
+                break;
+            }
+            case ColumnarWriter.ENCODING_DELTA: {
+                long previous = 0;
+                for (int i = 0; i < rows; i++) {
+                    previous += unzigzag(readVarint(in));
+                    values[i] = previous;
+                }
+                break;
+            }
+            case ColumnarWriter.ENCODING_PLAIN_LONG:
+                for (int i = 0; i < rows; i++) {
+                    values[i] = unzigzag(readVarint(in));
+                }
+                break;
+            default:
+                throw new IOException("Unknown integer encoding " + encoding);
+        }
+    }
+
+    private void readStrings(int encoding, String[] values, int rows) throws IOException {
+        if (encoding == ColumnarWriter.ENCODING_PLAIN_STRING) {
+            for (int i = 0; i < rows; i++) {
+                values[i] = readString();
+            }
+        } else if (encoding == ColumnarWriter.ENCODING_DICTIONARY) {
+            String[] entries = new String[(int) readVarint(in) + 1];
+            for (int i = 1; i < entries.length; i++) {
+                entries[i] = readString();
+            }
+            for (int i = 0; i < rows; i++) {
+                long code = readVarint(in);
+                if (code >= entries.length) {
+                    throw new IOException("Dictionary code " + code + " out of range");
+                }
+                values[i] = entries[(int) code];
+            }
+        } else {
+            throw new IOException("Unknown string encoding " + encoding);
+        }
+    }
+
+    private String readString() throws IOException {
+        long length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated columnar export");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes rows of a {@link RecordSchema} in a compact binary columnar format,
+ * read back by {@link ColumnarReader}. Only the raw provider columns are stored;
+ * formatted dates and labels are derived from them and can be rebuilt on read.
+ *
+ * <p>Layout: a header with the column names and types, then blocks of up to
+ * {@value #BLOCK_ROWS} rows, each holding one run per column, then a zero row
+ * count and the total number of rows. Integer columns are zigzag varints, as
+ * deltas from the previous row when that is smaller (sorted ids and timestamps
+ * shrink to a byte or two). String columns use a per-block dictionary when few
+ * values repeat, as for types and account names, and plain length-prefixed
+ * UTF-8 otherwise.
+ */
+public final class ColumnarWriter implements Closeable {
+
+    static final int MAGIC = 0x52434F4C; // "RCOL"
+    static final int VERSION = 1;
+    static final int BLOCK_ROWS = 4096;
+
+    static final int TYPE_STRING = 0;
+    static final int TYPE_LONG = 1;
+
+    static final int ENCODING_PLAIN_LONG = 1;
+    static final int ENCODING_DELTA = 2;
+    static final int ENCODING_CONSTANT = 3;
+    static final int ENCODING_PLAIN_STRING = 4;
+    static final int ENCODING_DICTIONARY = 5;
+
+    private final DataOutputStream out;
+    private final RecordSchema.ColumnType[] types;
+    private final long[][] longs;
+    private final String[][] strings;
+    private final ByteArrayOutputStream run = new ByteArrayOutputStream();
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private int blockRows;
+    private long totalRows;
+    private boolean closed;
+
+    public ColumnarWriter(OutputStream out, RecordSchema schema) throws IOException {
+        this.out = new DataOutputStream(out);
+        int columnCount = schema.getColumnCount();
+        types = new RecordSchema.ColumnType[columnCount];
+        longs = new long[columnCount][];
+        strings = new String[columnCount][];
+
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        writeVarint(this.out, columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            types[i] = schema.getColumnType(i);
+            this.out.writeUTF(schema.getColumnName(i));
+            if (types[i] == RecordSchema.ColumnType.LONG) {
+                this.out.writeByte(TYPE_LONG);
+                longs[i] = new long[BLOCK_ROWS];
+            } else {
+                this.out.writeByte(TYPE_STRING);
+                strings[i] = new String[BLOCK_ROWS];
+            }
+        }
+    }
+
+    public void write(RowBuffer row) throws IOException {
+        for (int i = 0; i < types.length; i++) {
+            if (longs[i] != null) {
+                longs[i][blockRows] = row.getLong(i);
+            } else {
+                strings[i][blockRows] = row.getString(i);
+            }
+        }
+        if (++blockRows == BLOCK_ROWS) {
+            flushBlock();
+        }
+    }
+
+    public long getRowCount() {
+        return totalRows + blockRows;
+    }
+
+    /** Writes the last block and the trailer, then closes the stream. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            writeVarint(out, 0);
+            writeVarint(out, totalRows);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockRows == 0) {
+            return;
+        }
+        writeVarint(out, blockRows);
+        for (int i = 0; i < types.length; i++) {
+            run.reset();
+            int encoding = longs[i] != null ? encodeLongs(longs[i]) : encodeStrings(strings[i]);
+            out.writeByte(encoding);
+            writeVarint(out, run.size());
+            run.writeTo(out);
+        }
+        totalRows += blockRows;
+        blockRows = 0;
+    }
+
+    private int encodeLongs(long[] values) {
+        long plainSize = 0;
+        long deltaSize = 0;
+        boolean constant = true;
+        long previous = 0;
+        for (int i = 0; i < blockRows; i++) {
+            plainSize += varintSize(zigzag(values[i]));
+            deltaSize += varintSize(zigzag(values[i] - previous));
+            constant &= values[i] == values[0];
+            previous = values[i];
+        }
+
+        if (constant) {
+            writeVarint(run, zigzag(values[0]));
+            return ENCODING_CONSTANT;
+        }
+        if (deltaSize < plainSize) {
+            previous = 0;
+            for (int i = 0; i < blockRows; i++) {
+                writeVarint(run, zigzag(values[i] - previous));
+                previous = values[i];
+            }
+            return ENCODING_DELTA;
+        }
+        for (int i = 0; i < blockRows; i++) {
+            writeVarint(run, zigzag(values[i]));
+        }
+        return ENCODING_PLAIN_LONG;
+    }
+
+    // Codes are 1-based so that 0 can stand for null
+    private int encodeStrings(String[] values) {
+        dictionary.clear();
+        int maxEntries = blockRows / 2;
+        for (int i = 0; i < blockRows && dictionary.size() <= maxEntries; i++) {
+            if (values[i] != null && !dictionary.containsKey(values[i])) {
+                dictionary.put(values[i], dictionary.size() + 1);
+            }
+        }
+
+        if (dictionary.size() > maxEntries) {
+            for (int i = 0; i < blockRows; i++) {
+                writeString(values[i]);
+            }
+            return ENCODING_PLAIN_STRING;
+        }
+
+        String[] entries = new String[dictionary.size()];
+        for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            entries[entry.getValue() - 1] = entry.getKey();
+        }
+        writeVarint(run, entries.length);
+        for (String entry : entries) {
+            writeString(entry);
+        }
+        for (int i = 0; i < blockRows; i++) {
+            writeVarint(run, values[i] != null ? dictionary.get(values[i]) : 0);
+        }
+        return ENCODING_DICTIONARY;
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeVarint(run, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(run, bytes.length + 1L);
+        run.write(bytes, 0, bytes.length);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.myapplication;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Chooses the ZIP method per entry from its MIME type. Formats that are already
+ * compressed are STORED, since deflating them costs CPU for almost no gain.
+ */
+public final class CompressionPolicy {
+
+    // image/* types whose payload is raw or text-like and still worth deflating
+    private static final Set<String> COMPRESSIBLE_IMAGES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "image/bmp",
+            "image/x-ms-bmp",
+            "image/tiff",
+            "image/x-adobe-dng",
+            "image/svg+xml",
+            "image/x-icon"
+    )));
+
+    private static final Set<String> COMPRESSED_APPLICATION_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "application/zip",
+            "application/gzip",
+            "application/x-7z-compressed",
+            "application/pdf"
+    )));
+
+    private enum Mode { MEDIA_AWARE, DEFLATE_ALL, STORE_ALL }
+
+    private final Mode mode;
+    private final int level;
+
+    private CompressionPolicy(Mode mode, int level) {
+        this.mode = mode;
+        this.level = level;
+    }
+
+    /** Stores compressed media (JPEG, HEIC, WebP, PNG, video, ...) and deflates everything else. */
+    public static CompressionPolicy mediaAware() {
+        return new CompressionPolicy(Mode.MEDIA_AWARE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public static CompressionPolicy deflateAll() {
+        return new CompressionPolicy(Mode.DEFLATE_ALL, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public static CompressionPolicy storeAll() {
+        return new CompressionPolicy(Mode.STORE_ALL, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /** Same policy with a different deflate level for the entries it compresses. */
+    public CompressionPolicy withLevel(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid deflate level " + level);
+        }
+        return new CompressionPolicy(mode, level);
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /** @return {@link ZipArchiveWriter#STORED} or {@link ZipArchiveWriter#DEFLATED} */
+    public int methodFor(String mimeType) {
+        switch (mode) {
+            case STORE_ALL:
+                return ZipArchiveWriter.STORED;
+            case DEFLATE_ALL:
+                return ZipArchiveWriter.DEFLATED;
+            default:
+                return isCompressed(mimeType) ? ZipArchiveWriter.STORED : ZipArchiveWriter.DEFLATED;
+        }
+    }
+
+    private static boolean isCompressed(String mimeType) {
+        if (mimeType == null) {
+            return false;
+        }
+        String type = mimeType.toLowerCase(Locale.US);
+        if (type.startsWith("image/")) {
+            return !COMPRESSIBLE_IMAGES.contains(type);
+        }
+        return type.startsWith("video/")
+                || type.startsWith("audio/")
+                || COMPRESSED_APPLICATION_TYPES.contains(type);
+    }
+}
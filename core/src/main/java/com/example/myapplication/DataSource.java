@@ -0,0 +1,17 @@
+package com.example.myapplication;
+
+/**
+ * One section of the export, registered with {@link ExtractionEngine#addSource(DataSource)}.
+ * Implementations run on an engine worker and write their section as it is read,
+ * so a slow output holds them back rather than buffering records.
+ */
+public interface DataSource {
+
+    /** Name of the section, unique within an export. */
+    String getName();
+
+    ExtractionEngine.Shape getShape();
+
+    /** Writes the whole section as one JSON value, counting rows into {@code metrics}. */
+    void write(JsonStreamWriter out, SourceMetrics metrics) throws Exception;
+}
@@ -0,0 +1,71 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A half-open range of epoch-millis timestamps, from inclusive to exclusive,
+ * that becomes a provider selection over a date column so rows outside it are
+ * filtered by the provider instead of being read and dropped. Either end may
+ * be open.
+ */
+public final class DateRange {
+
+    public static final DateRange ALL = new DateRange(Long.MIN_VALUE, Long.MAX_VALUE);
+
+    /** Inclusive; {@link Long#MIN_VALUE} for no lower bound. */
+    public final long fromMillis;
+    /** Exclusive; {@link Long#MAX_VALUE} for no upper bound. */
+    public final long toMillis;
+
+    public DateRange(long fromMillis, long toMillis) {
+        if (fromMillis > toMillis) {
+            throw new IllegalArgumentException("Range ends before it starts: " + fromMillis + " > " + toMillis);
+        }
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+    }
+
+    /** Everything from {@code days} days before {@code nowMillis} on, including later timestamps. */
+    public static DateRange lastDays(int days, long nowMillis) {
+        return new DateRange(nowMillis - TimeUnit.DAYS.toMillis(days), Long.MAX_VALUE);
+    }
+
+    public boolean isAll() {
+        return fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE;
+    }
+
+    public boolean contains(long millis) {
+        return millis >= fromMillis && (millis < toMillis || toMillis == Long.MAX_VALUE);
+    }
+
+    /**
+     * Selection over {@code column}, with one {@code ?} per bound in the order of
+     * {@link #selectionArgs}, or null if the range is unbounded. Rows where the
+     * column is NULL never match a bounded range.
+     */
+    public String selection(String column) {
+        if (fromMillis != Long.MIN_VALUE && toMillis != Long.MAX_VALUE) {
+            return column + " >= ? AND " + column + " < ?";
+        }
+        if (fromMillis != Long.MIN_VALUE) {
+            return column + " >= ?";
+        }
+        if (toMillis != Long.MAX_VALUE) {
+            return column + " < ?";
+        }
+        return null;
+    }
+
+    public String[] selectionArgs() {
+        List<String> args = new ArrayList<>(2);
+        if (fromMillis != Long.MIN_VALUE) {
+            args.add(Long.toString(fromMillis));
+        }
+        if (toMillis != Long.MAX_VALUE) {
+            args.add(Long.toString(toMillis));
+        }
+        return args.toArray(new String[0]);
+    }
+}
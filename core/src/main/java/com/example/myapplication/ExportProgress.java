@@ -0,0 +1,122 @@
+package com.example.myapplication;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live progress of one export, as counters its workers update without locking
+ * or allocating. Nothing is pushed anywhere: a {@link ProgressSampler} reads the
+ * counters at whatever rate its display wants, so the cost of reporting does
+ * not grow with the amount of data exported.
+ */
+public final class ExportProgress {
+
+    /** Counters of one source or phase; each is written by a single worker thread. */
+    public static final class Task {
+        private final String name;
+        private final String unit;
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile long total = -1;
+        private volatile long finishNanos = -1;
+
+        Task(String name, String unit) {
+            this.name = name;
+            this.unit = unit;
+        }
+
+        // Single writer: an ordered store is enough for readers and skips the full fence
+
+        public void setItems(long items) {
+            this.items.lazySet(items);
+        }
+
+        public void setBytes(long bytes) {
+            this.bytes.lazySet(bytes);
+        }
+
+        /** Items expected in all, e.g. a cursor's count; enables an ETA. */
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public void finish() {
+            finishNanos = System.nanoTime();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** What an item is, e.g. "rows" or "photos". */
+        public String getUnit() {
+            return unit;
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /** Expected items, or -1 if unknown. */
+        public long getTotal() {
+            return total;
+        }
+
+        long getStartNanos() {
+            return startNanos;
+        }
+
+        /** {@link System#nanoTime} at {@link #finish}, or -1 while running. */
+        long getFinishNanos() {
+            return finishNanos;
+        }
+
+        public boolean isFinished() {
+            return finishNanos >= 0;
+        }
+    }
+
+    private final List<Task> tasks = new CopyOnWriteArrayList<>();
+    private volatile String phase;
+    private volatile int expectedTasks;
+
+    public ExportProgress(String phase) {
+        this.phase = phase;
+    }
+
+    /** Registers a task starting now. */
+    public Task start(String name, String unit) {
+        Task task = new Task(name, unit);
+        tasks.add(task);
+        return task;
+    }
+
+    /** Tasks in the order they started. */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /** Headline of the export, shown above the tasks. */
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    /** Number of tasks the export will run, if known, for an "n/m done" count. */
+    public void setExpectedTasks(int expectedTasks) {
+        this.expectedTasks = expectedTasks;
+    }
+
+    public int getExpectedTasks() {
+        return expectedTasks;
+    }
+}
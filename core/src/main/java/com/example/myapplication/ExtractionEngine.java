@@ -0,0 +1,491 @@
+package com.example.myapplication;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent export sources concurrently on a bounded pool. Sections are
+ * spliced into the final document in registration order, so output is
+ * deterministic regardless of which source finishes first. A source whose section
+ * is not being written yet spools to its own part file; once the output reaches
+ * it, the rest streams straight through and a slow output holds the source back
+ * (see {@link SectionPipe}). Sections can also be kept apart as one
+ * newline-delimited JSON entry each, see {@link #runLineDelimited}, next to
+ * sources that write their own binary format.
+ *
+ * <p>Every source gets a {@link SourceMetrics} to count rows into; with a metrics
+ * section set, the per-source numbers are appended to the document after the
+ * sources. With an {@link ExportProgress} set, each source is also a live task
+ * counting its rows and section bytes.
+ */
+public final class ExtractionEngine {
+
+    public interface SectionWriter {
+        void write(JsonStreamWriter out) throws Exception;
+    }
+
+    /** Writes a section in a binary format of its own instead of JSON. */
+    public interface BinarySectionWriter {
+        void write(OutputStream out, SourceMetrics metrics) throws Exception;
+    }
+
+    /** A section writer that reports its rows, queries and skipped rows. */
+    public interface MeteredSectionWriter {
+        void write(JsonStreamWriter out, SourceMetrics metrics) throws Exception;
+    }
+
+    public interface Listener {
+        void onSourceStarted(String name);
+
+        void onSourceFinished(SourceResult result);
+    }
+
+    /** Shape of a section, used to write an empty placeholder when a source fails. */
+    public enum Shape { OBJECT, ARRAY }
+
+    public static final class SourceResult {
+        public final String name;
+        public final long durationMillis;
+        public final long bytes;
+        public final Throwable error;
+        public final SourceMetrics metrics;
+
+        SourceResult(String name, long durationMillis, long bytes, Throwable error, SourceMetrics metrics) {
+            this.name = name;
+            this.durationMillis = durationMillis;
+            this.bytes = bytes;
+            this.error = error;
+            this.metrics = metrics;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        public long getRowsPerSecond() {
+            return durationMillis > 0 ? metrics.getRows() * 1000L / durationMillis : metrics.getRows();
+        }
+    }
+
+    /** Entry listing the sections of a line-delimited export. */
+    public static final String NDJSON_MANIFEST = "manifest.json";
+    public static final String NDJSON_FORMAT = "ndjson";
+
+    private static final byte[] EMPTY_OBJECT_LINE = {'{', '}', '\n'};
+    // Bytes in flight between a source and the output once the output is reading it
+    private static final int PIPE_CHUNKS = 8;
+
+    private static final class Source {
+        final String name;
+        final Shape shape;
+        final MeteredSectionWriter writer;
+        final String binaryFormat;
+        final BinarySectionWriter binaryWriter;
+
+        Source(String name, Shape shape, MeteredSectionWriter writer,
+               String binaryFormat, BinarySectionWriter binaryWriter) {
+            this.name = name;
+            this.shape = shape;
+            this.writer = writer;
+            this.binaryFormat = binaryFormat;
+            this.binaryWriter = binaryWriter;
+        }
+
+        String fileName() {
+            return name + "." + (binaryFormat != null ? binaryFormat : NDJSON_FORMAT);
+        }
+    }
+
+    private final int parallelism;
+    private final File spoolDir;
+    private final String indent;
+    private final List<Source> sources = new ArrayList<>();
+    private String metricsSection;
+    private Tracer tracer = Tracer.NONE;
+    private ExportProgress progress;
+
+    /**
+     * @param parallelism maximum number of sources extracted at the same time
+     * @param spoolDir    scratch directory for per-source part files
+     * @param indent      indentation for the merged document, or null for compact output
+     */
+    public ExtractionEngine(int parallelism, File spoolDir, String indent) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+        this.parallelism = parallelism;
+        this.spoolDir = spoolDir;
+        this.indent = indent;
+    }
+
+    public ExtractionEngine addSource(String name, Shape shape, SectionWriter writer) {
+        return addSource(name, shape, (out, metrics) -> writer.write(out));
+    }
+
+    public ExtractionEngine addSource(String name, Shape shape, MeteredSectionWriter writer) {
+        sources.add(new Source(name, shape, writer, null, null));
+        return this;
+    }
+
+    public ExtractionEngine addSource(DataSource source) {
+        return addSource(source.getName(), source.getShape(), source::write);
+    }
+
+    /**
+     * Adds a source stored as {@code <name>.<format>} by {@link #runLineDelimited};
+     * it cannot be part of a single JSON document.
+     */
+    public ExtractionEngine addBinarySource(String name, String format, BinarySectionWriter writer) {
+        sources.add(new Source(name, Shape.ARRAY, null, format, writer));
+        return this;
+    }
+
+    /** Appends the metrics of every source as a last section called {@code name}, or none if null. */
+    public ExtractionEngine setMetricsSection(String name) {
+        metricsSection = name;
+        return this;
+    }
+
+    /** Traces each source's extraction on its worker and each section's merge on the caller. */
+    public ExtractionEngine setTracer(Tracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    /** Publishes each source's rows and bytes to {@code progress} while it runs; null for none. */
+    public ExtractionEngine setProgress(ExportProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    /**
+     * Extracts every source and writes the merged document to {@code out}. A source
+     * that fails before any of its output was handed on is written as an empty
+     * section; one that fails later keeps what it wrote, closed off so the document
+     * stays valid. Either way the error is reported in its {@link SourceResult};
+     * only I/O errors on the merged output abort the run.
+     */
+    public List<SourceResult> run(JsonStreamWriter out, Listener listener)
+            throws IOException, InterruptedException {
+        for (Source source : sources) {
+            if (source.binaryWriter != null) {
+                throw new IllegalStateException("Binary source " + source.name + " needs runLineDelimited");
+            }
+        }
+        long start = System.nanoTime();
+        out.beginObject();
+        List<SourceResult> results = extractAll(listener, false, (source, in) -> {
+            out.name(source.name);
+            if (in != null) {
+                try (Tracer.Section ignored = tracer.begin("merge " + source.name)) {
+                    out.rawValue(in);
+                }
+            } else if (source.shape == Shape.OBJECT) {
+                out.beginObject().endObject();
+            } else {
+                out.beginArray().endArray();
+            }
+        });
+        if (metricsSection != null) {
+            out.name(metricsSection);
+            writeMetrics(results, (System.nanoTime() - start) / 1_000_000L, out);
+        }
+        out.endObject();
+        return results;
+    }
+
+    /**
+     * Extracts every source into {@code zip} as newline-delimited JSON, one
+     * {@code <source>.ndjson} entry per source: one line per record, or a single
+     * line for an object section. A source that fails part way keeps the lines it
+     * wrote. Binary sources are copied as they were written and counted by their
+     * metrics; a failed one is left empty. The metrics section, if set, is added as
+     * {@code <name>.json}, and {@value #NDJSON_MANIFEST} lists every entry in
+     * registration order with its record count. The caller closes {@code zip}.
+     */
+    public List<SourceResult> runLineDelimited(ZipArchiveWriter zip, int method, Listener listener)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Long> lineCounts = new ArrayList<>();
+        List<SourceResult> results = extractAll(listener, true, (source, in) -> {
+            long lines = 0;
+            try (Tracer.Section ignored = tracer.begin("merge " + source.name)) {
+                boolean written = false;
+                if (in != null) {
+                    LineCountingInputStream counting = new LineCountingInputStream(in);
+                    try {
+                        zip.addEntry(source.fileName(), method, counting, -1);
+                        lines = counting.lines;
+                        written = true;
+                    } catch (ZipArchiveWriter.SourceException e) {
+                        // Rolled back; the source's error is reported in its result
+                    }
+                }
+                if (!written) {
+                    try (OutputStream entry = zip.openEntry(source.fileName(), method)) {
+                        if (source.shape == Shape.OBJECT && source.binaryWriter == null) {
+                            entry.write(EMPTY_OBJECT_LINE);
+                            lines = 1;
+                        }
+                    }
+                }
+            }
+            lineCounts.add(lines);
+        });
+
+        String metricsFile = null;
+        if (metricsSection != null) {
+            metricsFile = metricsSection + ".json";
+            try (JsonStreamWriter out = new JsonStreamWriter(zip.openEntry(metricsFile, method), "  ")) {
+                writeMetrics(results, (System.nanoTime() - start) / 1_000_000L, out);
+            }
+        }
+
+        try (JsonStreamWriter out = new JsonStreamWriter(zip.openEntry(NDJSON_MANIFEST, method), "  ")) {
+            out.beginObject();
+            out.name("sections").beginArray();
+            for (int i = 0; i < sources.size(); i++) {
+                Source source = sources.get(i);
+                out.beginObject();
+                out.name("name").value(source.name);
+                out.name("file").value(source.fileName());
+                out.name("format").value(source.binaryFormat != null ? source.binaryFormat : NDJSON_FORMAT);
+                out.name("shape").value(source.shape == Shape.OBJECT ? "object" : "array");
+                SourceResult result = results.get(i);
+                boolean binary = source.binaryWriter != null;
+                out.name("records").value(!binary ? lineCounts.get(i)
+                        : result.isSuccess() ? result.metrics.getRows() : 0);
+                out.name("success").value(result.isSuccess());
+                out.endObject();
+            }
+            out.endArray();
+            out.name("metrics_file").value(metricsFile != null ? metricsFile : "");
+            out.endObject();
+        }
+        return results;
+    }
+
+    private interface SectionSink {
+        /** @param in the section's bytes, or null if the source failed before writing any */
+        void accept(Source source, InputStream in) throws IOException;
+    }
+
+    // Runs every source on the pool and hands their sections to the sink in registration order
+    private List<SourceResult> extractAll(Listener listener, boolean lineDelimited, SectionSink sink)
+            throws IOException, InterruptedException {
+        if (!spoolDir.exists() && !spoolDir.mkdirs()) {
+            throw new IOException("Cannot create spool directory " + spoolDir);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, Math.max(1, sources.size())), new WorkerFactory());
+        List<SectionPipe> pipes = new ArrayList<>();
+        List<Future<SourceResult>> futures = new ArrayList<>();
+        List<SourceResult> results = new ArrayList<>();
+        try {
+            for (Source source : sources) {
+                SectionPipe pipe = new SectionPipe(partFile(source), PIPE_CHUNKS);
+                pipes.add(pipe);
+                futures.add(executor.submit(() -> {
+                    try {
+                        return extract(source, pipe, listener, lineDelimited);
+                    } finally {
+                        // No-op if the section ended; otherwise the sink must not wait for it forever
+                        pipe.fail(new IllegalStateException("Source " + source.name + " did not finish"));
+                    }
+                }));
+            }
+
+            for (int i = 0; i < sources.size(); i++) {
+                Source source = sources.get(i);
+                SectionPipe pipe = pipes.get(i);
+                if (pipe.attach()) {
+                    try (InputStream in = pipe.consumer()) {
+                        sink.accept(source, in);
+                    }
+                } else {
+                    sink.accept(source, null);
+                }
+                results.add(await(source, futures.get(i)));
+                partFile(source).delete();
+            }
+        } finally {
+            // Releases sources still blocked on an output that gave up
+            for (SectionPipe pipe : pipes) {
+                pipe.cancel();
+            }
+            executor.shutdownNow();
+            deleteParts();
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    private SourceResult extract(Source source, SectionPipe pipe, Listener listener, boolean lineDelimited) {
+        if (listener != null) {
+            listener.onSourceStarted(source.name);
+        }
+        long start = System.nanoTime();
+        ExportProgress.Task task = progress != null ? progress.start(source.name, "rows") : null;
+        SourceMetrics metrics = new SourceMetrics(task);
+        pipe.setProgress(task);
+        long bytes = 0;
+        Throwable error = null;
+
+        OutputStream sectionOut = pipe.producer();
+        JsonStreamWriter writer = null;
+        try (Tracer.Section ignored = tracer.begin("source " + source.name)) {
+            if (source.binaryWriter != null) {
+                OutputStream buffered = new BufferedOutputStream(sectionOut, SectionPipe.CHUNK_SIZE);
+                source.binaryWriter.write(buffered, metrics);
+                buffered.flush();
+                bytes = pipe.getDelivered();
+            } else {
+                writer = lineDelimited
+                        ? new JsonStreamWriter(sectionOut, null).setLineDelimited()
+                        : new JsonStreamWriter(sectionOut, indent).setBaseDepth(1);
+                source.writer.write(writer, metrics);
+                writer.close();
+                bytes = writer.getBytesWritten();
+            }
+            pipe.finish();
+        } catch (Throwable t) {
+            error = t;
+            if (writer != null && pipe.getDelivered() > 0) {
+                // Part of the section may already be in the output, so close it off rather than drop it
+                try {
+                    writer.endAll().flush();
+                    bytes = writer.getBytesWritten();
+                    pipe.finish();
+                } catch (IOException | RuntimeException e) {
+                    pipe.fail(t);
+                }
+            } else {
+                pipe.fail(t);
+            }
+        }
+
+        long durationMillis = (System.nanoTime() - start) / 1_000_000L;
+        metrics.sampleHeap();
+        if (task != null) {
+            task.finish();
+        }
+        SourceResult result = new SourceResult(source.name, durationMillis, bytes, error, metrics);
+        if (listener != null) {
+            listener.onSourceFinished(result);
+        }
+        return result;
+    }
+
+    private SourceResult await(Source source, Future<SourceResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // extract() catches everything, so this only happens if the listener throws
+            return new SourceResult(source.name, 0, 0, e.getCause(), new SourceMetrics());
+        }
+    }
+
+    /**
+     * Writes the metrics of a run as one object: the wall time, the highest heap
+     * seen by any source and one entry per source in registration order.
+     */
+    public static void writeMetrics(List<SourceResult> results, long wallMillis, JsonStreamWriter out)
+            throws IOException {
+        long peakHeapBytes = 0;
+        for (SourceResult result : results) {
+            peakHeapBytes = Math.max(peakHeapBytes, result.metrics.getPeakHeapBytes());
+        }
+
+        out.beginObject();
+        out.name("wall_ms").value(wallMillis);
+        out.name("peak_heap_bytes").value(peakHeapBytes);
+        out.name("sources").beginArray();
+        for (SourceResult result : results) {
+            SourceMetrics metrics = result.metrics;
+            out.beginObject();
+            out.name("name").value(result.name);
+            out.name("success").value(result.isSuccess());
+            if (!result.isSuccess()) {
+                out.name("error").value(result.error.getClass().getSimpleName() + ": " + result.error.getMessage());
+            }
+            out.name("rows").value(metrics.getRows());
+            out.name("skipped_rows").value(metrics.getSkippedRows());
+            out.name("duration_ms").value(result.durationMillis);
+            out.name("query_ms").value(metrics.getQueryMillis());
+            out.name("first_row_ms").value(metrics.getFirstRowMillis());
+            out.name("rows_per_second").value(result.getRowsPerSecond());
+            out.name("bytes").value(result.bytes);
+            out.name("peak_heap_bytes").value(metrics.getPeakHeapBytes());
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private File partFile(Source source) {
+        return new File(spoolDir, source.name + ".part");
+    }
+
+    private void deleteParts() {
+        for (Source source : sources) {
+            partFile(source).delete();
+        }
+        spoolDir.delete();
+    }
+
+    private static final class LineCountingInputStream extends FilterInputStream {
+        long lines;
+
+        LineCountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == '\n') {
+                lines++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            for (int i = 0; i < read; i++) {
+                if (b[off + i] == '\n') {
+                    lines++;
+                }
+            }
+            return read;
+        }
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "export-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
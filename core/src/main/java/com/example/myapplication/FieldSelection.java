@@ -0,0 +1,101 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The fields of one export section to write. Sources turn it into provider
+ * projections and skip the work behind unselected fields, so an export that
+ * needs a few fields reads and formats only those. Names a section does not
+ * have are ignored.
+ */
+public final class FieldSelection {
+
+    public static final FieldSelection ALL = new FieldSelection(null);
+
+    // Null for every field
+    private final Set<String> fields;
+
+    private FieldSelection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public static FieldSelection of(Collection<String> fields) {
+        return new FieldSelection(Collections.unmodifiableSet(new LinkedHashSet<>(fields)));
+    }
+
+    /**
+     * Reads one selection per section from properties such as
+     * {@code sms_messages=id,address,date}. A section that is not listed, or
+     * is listed as {@code *}, keeps every field.
+     */
+    public static Map<String, FieldSelection> parse(Properties properties) {
+        Map<String, FieldSelection> selections = new HashMap<>();
+        for (String section : properties.stringPropertyNames()) {
+            String value = properties.getProperty(section).trim();
+            if (value.equals("*")) {
+                continue;
+            }
+            Set<String> fields = new LinkedHashSet<>();
+            for (String field : value.split(",")) {
+                if (!field.trim().isEmpty()) {
+                    fields.add(field.trim());
+                }
+            }
+            selections.put(section.trim(), of(fields));
+        }
+        return selections;
+    }
+
+    /** {@link #parse} of a properties file, or no selections if it does not exist. */
+    public static Map<String, FieldSelection> load(File file) throws IOException {
+        if (!file.exists()) {
+            return Collections.emptyMap();
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return parse(properties);
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    /** True if any of {@code fields} is selected. */
+    public boolean includesAny(String... fields) {
+        for (String field : fields) {
+            if (includes(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The selected field names, or null if every field is selected. */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /** Equal if the same fields are selected, in any order. */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FieldSelection && Objects.equals(fields, ((FieldSelection) o).fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(fields);
+    }
+}
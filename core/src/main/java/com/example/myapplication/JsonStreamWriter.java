@@ -0,0 +1,463 @@
+package com.example.myapplication;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Streaming JSON writer that encodes straight to UTF-8 bytes in a fixed buffer,
+ * so records can be written as they are read without building a document tree.
+ */
+public final class JsonStreamWriter implements Closeable, Flushable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // Scope states, one per open object/array
+    private static final int EMPTY_OBJECT = 1;
+    private static final int NONEMPTY_OBJECT = 2;
+    private static final int EMPTY_ARRAY = 3;
+    private static final int NONEMPTY_ARRAY = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+    // Top-level array of a line-delimited document, written without brackets
+    private static final int EMPTY_LINES = 8;
+    private static final int NONEMPTY_LINES = 9;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final byte[] indent;
+    private int position;
+    private long bytesWritten;
+
+    private int[] stack = new int[32];
+    private int stackSize;
+    private int baseDepth;
+    private boolean lineDelimited;
+    private final CharArrayView charView = new CharArrayView();
+
+    /**
+     * @param indent indentation per level, or null for compact output
+     */
+    public JsonStreamWriter(OutputStream out, String indent) {
+        this(out, indent, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonStreamWriter(OutputStream out, String indent, int bufferSize) {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 64)];
+        this.indent = (indent == null || indent.isEmpty()) ? null : indent.getBytes();
+        stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Indents output as if it were nested {@code depth} levels deep, so a fragment
+     * written on its own can later be spliced into an enclosing document.
+     */
+    public JsonStreamWriter setBaseDepth(int depth) {
+        if (peek() != EMPTY_DOCUMENT) {
+            throw new IllegalStateException("Base depth must be set before writing");
+        }
+        baseDepth = depth;
+        return this;
+    }
+
+    /**
+     * Writes newline-delimited JSON: each element of a top-level array goes on a
+     * line of its own with no enclosing brackets, and a top-level object is
+     * followed by a newline. Requires compact output.
+     */
+    public JsonStreamWriter setLineDelimited() {
+        if (peek() != EMPTY_DOCUMENT) {
+            throw new IllegalStateException("Line-delimited mode must be set before writing");
+        }
+        if (indent != null) {
+            throw new IllegalStateException("Line-delimited output cannot be indented");
+        }
+        lineDelimited = true;
+        return this;
+    }
+
+    /**
+     * Continues a top-level array that an earlier writer left open in the same
+     * file, e.g. one cut short by a crash and truncated to its last complete
+     * element. Must be called before writing; the array is closed as usual.
+     *
+     * @param nonEmpty whether the array already has elements
+     */
+    public JsonStreamWriter continueArray(boolean nonEmpty) {
+        if (peek() != EMPTY_DOCUMENT) {
+            throw new IllegalStateException("An array can only be continued before writing");
+        }
+        stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        if (lineDelimited) {
+            push(nonEmpty ? NONEMPTY_LINES : EMPTY_LINES);
+        } else {
+            push(nonEmpty ? NONEMPTY_ARRAY : EMPTY_ARRAY);
+        }
+        return this;
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        return open(EMPTY_OBJECT, '{');
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        if (lineDelimited && stackSize == 1) {
+            push(EMPTY_LINES);
+            return this;
+        }
+        return open(EMPTY_ARRAY, '[');
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        int context = peek();
+        if (context == EMPTY_LINES || context == NONEMPTY_LINES) {
+            stackSize--;
+            if (context == NONEMPTY_LINES) {
+                writeByte('\n');
+            }
+            return this;
+        }
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+
+    public JsonStreamWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        int context = peek();
+        if (context == NONEMPTY_OBJECT) {
+            writeByte(',');
+        } else if (context != EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        newline();
+        writeString(name);
+        writeByte(':');
+        if (indent != null) {
+            writeByte(' ');
+        }
+        stack[stackSize - 1] = DANGLING_NAME;
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /** Writes {@code length} chars of {@code chars} as a string value without copying them. */
+    public JsonStreamWriter value(char[] chars, int offset, int length) throws IOException {
+        beforeValue();
+        charView.set(chars, offset, length);
+        writeString(charView);
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    public JsonStreamWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        long longValue = (long) value;
+        if (value == longValue) {
+            writeAscii(Long.toString(longValue));
+        } else {
+            writeAscii(Double.toString(value));
+        }
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    /**
+     * Closes every open array and object, completing a dangling name with null,
+     * so output cut short by an error is still well-formed.
+     */
+    public JsonStreamWriter endAll() throws IOException {
+        while (stackSize > 1) {
+            int context = peek();
+            if (context == DANGLING_NAME) {
+                nullValue();
+            } else if (context == EMPTY_OBJECT || context == NONEMPTY_OBJECT) {
+                endObject();
+            } else {
+                endArray();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Copies an already-encoded JSON value verbatim, e.g. a fragment spooled to disk.
+     */
+    public JsonStreamWriter rawValue(InputStream in) throws IOException {
+        beforeValue();
+        flushBuffer();
+        byte[] chunk = buffer;
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            out.write(chunk, 0, read);
+            bytesWritten += read;
+        }
+        return this;
+    }
+
+    /**
+     * Total bytes produced so far, including bytes still held in the buffer.
+     */
+    public long getBytesWritten() {
+        return bytesWritten + position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+        if (stackSize > 1 || peek() != NONEMPTY_DOCUMENT) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private JsonStreamWriter open(int empty, char bracket) throws IOException {
+        push(empty);
+        writeByte(bracket);
+        return this;
+    }
+
+    private JsonStreamWriter close(int empty, int nonempty, char bracket) throws IOException {
+        int context = peek();
+        if (context != nonempty && context != empty) {
+            throw new IllegalStateException("Nesting problem");
+        }
+        stackSize--;
+        if (context == nonempty) {
+            newline();
+        }
+        writeByte(bracket);
+        if (lineDelimited && stackSize == 1) {
+            writeByte('\n');
+        }
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        switch (peek()) {
+            case NONEMPTY_DOCUMENT:
+                throw new IllegalStateException("JSON must have only one top-level value");
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                newline();
+                break;
+            case NONEMPTY_ARRAY:
+                writeByte(',');
+                newline();
+                break;
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_LINES:
+                stack[stackSize - 1] = NONEMPTY_LINES;
+                break;
+            case NONEMPTY_LINES:
+                writeByte('\n');
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem");
+        }
+    }
+
+    private int peek() {
+        return stack[stackSize - 1];
+    }
+
+    private void push(int state) {
+        if (stackSize == stack.length) {
+            int[] grown = new int[stackSize * 2];
+            System.arraycopy(stack, 0, grown, 0, stackSize);
+            stack = grown;
+        }
+        stack[stackSize++] = state;
+    }
+
+    private void newline() throws IOException {
+        if (indent == null) {
+            return;
+        }
+        writeByte('\n');
+        for (int i = 1 - baseDepth; i < stackSize; i++) {
+            writeBytes(indent);
+        }
+    }
+
+    private void writeString(CharSequence value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"':
+                    case '\\':
+                        writeByte('\\');
+                        writeByte(c);
+                        break;
+                    case '\n':
+                        writeByte('\\');
+                        writeByte('n');
+                        break;
+                    case '\r':
+                        writeByte('\\');
+                        writeByte('r');
+                        break;
+                    case '\t':
+                        writeByte('\\');
+                        writeByte('t');
+                        break;
+                    case '\b':
+                        writeByte('\\');
+                        writeByte('b');
+                        break;
+                    case '\f':
+                        writeByte('\\');
+                        writeByte('f');
+                        break;
+                    default:
+                        if (c <= 0x1F) {
+                            writeByte('\\');
+                            writeByte('u');
+                            writeByte('0');
+                            writeByte('0');
+                            writeByte(HEX[c >> 4]);
+                            writeByte(HEX[c & 0xF]);
+                        } else {
+                            writeByte(c);
+                        }
+                        break;
+                }
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, same replacement the platform encoder uses
+                writeByte('?');
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeAscii(String value) throws IOException {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        for (byte b : bytes) {
+            writeByte(b);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            bytesWritten += position;
+            position = 0;
+        }
+    }
+
+    // Reusable CharSequence over a slice of a char array
+    private static final class CharArrayView implements CharSequence {
+        private char[] chars;
+        private int offset;
+        private int length;
+
+        void set(char[] chars, int offset, int length) {
+            this.chars = chars;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(chars, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
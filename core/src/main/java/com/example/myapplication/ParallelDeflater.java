@@ -0,0 +1,232 @@
+package com.example.myapplication;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Raw deflate on a pool of threads, one stream at a time. Input is cut into
+ * fixed chunks that are deflated concurrently and handed to a {@link Sink} in
+ * order. Each chunk is primed with the previous 32 KB as its dictionary and ends
+ * on a sync flush, so the concatenation is one ordinary deflate stream that any
+ * inflater can read. Used from a single caller thread.
+ */
+final class ParallelDeflater implements Closeable {
+
+    /** Receives compressed output, in stream order, on the caller's thread. */
+    interface Sink {
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    private static final int CHUNK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private final int level;
+    private final String name;
+    private final ExecutorService compressors;
+    private final int maxChunksInFlight;
+    private final ArrayDeque<Future<Chunk>> chunksInFlight = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<Deflater> idleDeflaters = new ConcurrentLinkedQueue<>();
+    private Chunk filling;
+    private Tracer tracer = Tracer.NONE;
+
+    /**
+     * @param name names the worker threads and trace sections, e.g. "zip"
+     */
+    ParallelDeflater(int level, int threads, String name) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.level = level;
+        this.name = name;
+        compressors = Executors.newFixedThreadPool(threads, new CompressorFactory(name));
+        // Enough queued work to keep every thread busy while the caller reads ahead
+        maxChunksInFlight = threads * 2;
+    }
+
+    ParallelDeflater setTracer(Tracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    /** Begins a new deflate stream, with no dictionary. */
+    void start() {
+        if (filling != null) {
+            throw new IllegalStateException("Previous stream is still open");
+        }
+        filling = obtainChunk();
+        filling.dictionaryLength = 0;
+    }
+
+    void write(byte[] b, int off, int len, Sink sink) throws IOException {
+        while (len > 0) {
+            int count = Math.min(len, CHUNK_SIZE - filling.length);
+            System.arraycopy(b, off, filling.input, filling.length, count);
+            filling.length += count;
+            off += count;
+            len -= count;
+            if (filling.length == CHUNK_SIZE) {
+                submitChunk(false, sink);
+            }
+        }
+    }
+
+    /** Ends the stream and hands everything still being compressed to {@code sink}. */
+    void finish(Sink sink) throws IOException {
+        submitChunk(true, sink);
+    }
+
+    /** Drops the open stream, if any, without emitting the rest of it. */
+    void abort() {
+        // Let running chunks finish so their deflaters return to the pool before close()
+        while (!chunksInFlight.isEmpty()) {
+            try {
+                freeChunks.add(awaitChunk(chunksInFlight.poll()));
+            } catch (IOException | RuntimeException ignored) {
+                // the stream is being discarded anyway
+            }
+        }
+        if (filling != null) {
+            freeChunks.add(filling);
+            filling = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        abort();
+        compressors.shutdown();
+        for (Deflater idle; (idle = idleDeflaters.poll()) != null; ) {
+            idle.end();
+        }
+    }
+
+    // Queues the filled chunk; the last chunk of a stream also drains the queue
+    private void submitChunk(boolean last, Sink sink) throws IOException {
+        Chunk chunk = filling;
+        chunk.last = last;
+        filling = null;
+        chunksInFlight.add(compressors.submit(chunk));
+        if (!last) {
+            // Prime the next chunk with this one's tail so matches can cross the boundary
+            Chunk next = obtainChunk();
+            next.dictionaryLength = Math.min(DICTIONARY_SIZE, chunk.length);
+            System.arraycopy(chunk.input, chunk.length - next.dictionaryLength,
+                    next.dictionary, 0, next.dictionaryLength);
+            filling = next;
+        }
+        while (chunksInFlight.size() > (last ? 0 : maxChunksInFlight)) {
+            Chunk done;
+            try (Tracer.Section ignored = tracer.begin(name + " wait for chunk")) {
+                done = awaitChunk(chunksInFlight.poll());
+            }
+            sink.write(done.output, 0, done.outputLength);
+            freeChunks.add(done);
+        }
+    }
+
+    private Chunk obtainChunk() {
+        Chunk chunk = freeChunks.poll();
+        if (chunk == null) {
+            chunk = new Chunk();
+        }
+        chunk.length = 0;
+        return chunk;
+    }
+
+    private static Chunk awaitChunk(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /** One slice of a stream, compressed on a worker into its own output buffer. */
+    private final class Chunk implements Callable<Chunk> {
+        final byte[] input = new byte[CHUNK_SIZE];
+        final byte[] dictionary = new byte[DICTIONARY_SIZE];
+        byte[] output = new byte[CHUNK_SIZE + (CHUNK_SIZE >> 3)];
+        int length;
+        int dictionaryLength;
+        int outputLength;
+        boolean last;
+
+        @Override
+        public Chunk call() {
+            Deflater chunkDeflater = idleDeflaters.poll();
+            if (chunkDeflater == null) {
+                chunkDeflater = new Deflater(level, true);
+            }
+            try (Tracer.Section ignored = tracer.begin(name + " deflate chunk")) {
+                chunkDeflater.reset();
+                if (dictionaryLength > 0) {
+                    chunkDeflater.setDictionary(dictionary, 0, dictionaryLength);
+                }
+                chunkDeflater.setInput(input, 0, length);
+                outputLength = 0;
+                if (last) {
+                    chunkDeflater.finish();
+                    while (!chunkDeflater.finished()) {
+                        deflateInto(chunkDeflater, Deflater.NO_FLUSH);
+                    }
+                } else {
+                    // A sync flush ends on a byte boundary without a final block
+                    while (deflateInto(chunkDeflater, Deflater.SYNC_FLUSH) == 0) {
+                        // output was full, go round again with more room
+                    }
+                }
+            } finally {
+                idleDeflaters.add(chunkDeflater);
+            }
+            return this;
+        }
+
+        // Returns the free space left after the call; 0 means the output may be incomplete
+        private int deflateInto(Deflater chunkDeflater, int flush) {
+            if (outputLength == output.length) {
+                output = Arrays.copyOf(output, output.length * 2);
+            }
+            outputLength += chunkDeflater.deflate(output, outputLength, output.length - outputLength, flush);
+            return output.length - outputLength;
+        }
+    }
+
+    private static final class CompressorFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        CompressorFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-deflate-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compression as data is written, for exports too large to compress in a
+ * second pass. With more than one thread the data is deflated by a
+ * {@link ParallelDeflater}, so compression keeps up with a fast writer instead
+ * of being limited by one core. The output is a single gzip member that gunzip
+ * and {@link java.util.zip.GZIPInputStream} read as usual.
+ */
+public final class ParallelGzipOutputStream extends OutputStream {
+
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, // magic
+            Deflater.DEFLATED, // method
+            0,                 // flags
+            0, 0, 0, 0,        // no modification time
+            0,                 // extra flags
+            (byte) 0xff        // unknown OS
+    };
+
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final ParallelDeflater parallelDeflater;
+    private final ParallelDeflater.Sink sink;
+    private final byte[] deflateBuffer = new byte[64 * 1024];
+    private final CRC32 crc = new CRC32();
+    private long size;
+    private boolean closed;
+
+    /**
+     * @param out     receives the compressed stream and is closed with it
+     * @param level   deflate level
+     * @param threads compression threads; 1 deflates inline on the calling thread
+     */
+    public ParallelGzipOutputStream(OutputStream out, int level, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.out = out;
+        out.write(HEADER);
+        this.sink = out::write;
+        if (threads == 1) {
+            deflater = new Deflater(level, true);
+            parallelDeflater = null;
+        } else {
+            deflater = null;
+            parallelDeflater = new ParallelDeflater(level, threads, "gzip");
+            parallelDeflater.start();
+        }
+    }
+
+    /** Traces chunk compression on the worker threads. */
+    public ParallelGzipOutputStream setTracer(Tracer tracer) {
+        if (parallelDeflater != null) {
+            parallelDeflater.setTracer(tracer);
+        }
+        return this;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (len == 0) {
+            return;
+        }
+        crc.update(b, off, len);
+        size += len;
+        if (parallelDeflater != null) {
+            parallelDeflater.write(b, off, len, sink);
+        } else {
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drainDeflater();
+            }
+        }
+    }
+
+    /**
+     * Only flushes {@code out}: data still being compressed is not forced out,
+     * since that would end a deflate block early.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** Ends the gzip member with its CRC and length, and closes {@code out}. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (parallelDeflater != null) {
+                parallelDeflater.finish(sink);
+            } else {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    drainDeflater();
+                }
+            }
+            byte[] trailer = new byte[8];
+            writeIntLE(trailer, 0, (int) crc.getValue());
+            // ISIZE is the length modulo 2^32
+            writeIntLE(trailer, 4, (int) size);
+            out.write(trailer);
+        } finally {
+            if (parallelDeflater != null) {
+                parallelDeflater.close();
+            } else {
+                deflater.end();
+            }
+            out.close();
+        }
+    }
+
+    private void drainDeflater() throws IOException {
+        int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.NO_FLUSH);
+        if (length > 0) {
+            out.write(deflateBuffer, 0, length);
+        }
+    }
+
+    private static void writeIntLE(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >>> 8);
+        b[off + 2] = (byte) (value >>> 16);
+        b[off + 3] = (byte) (value >>> 24);
+    }
+}
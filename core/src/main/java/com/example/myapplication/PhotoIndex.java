@@ -0,0 +1,152 @@
+package com.example.myapplication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of photos already written to an archive, so later exports can refer to
+ * them instead of copying them again. Photos are matched by MediaStore id, size
+ * and modification time; a SHA-256 of the content catches the same image under
+ * a new id, e.g. after a media rescan.
+ */
+public final class PhotoIndex {
+
+    private static final int MAGIC = 0x50494458; // "PIDX"
+    private static final int VERSION = 1;
+
+    public static final class Record {
+        public final long id;
+        public final long size;
+        public final long dateModified;
+        public final String sha256;
+        public final String archive;
+        public final String entry;
+
+        public Record(long id, long size, long dateModified, String sha256, String archive, String entry) {
+            this.id = id;
+            this.size = size;
+            this.dateModified = dateModified;
+            this.sha256 = sha256;
+            this.archive = archive;
+            this.entry = entry;
+        }
+    }
+
+    // Insertion ordered so the saved file lists photos in archive order
+    private final Map<Long, Record> byId = new LinkedHashMap<>();
+    private final Map<String, Record> byHash = new HashMap<>();
+    private final Set<Long> sizes = new HashSet<>();
+
+    /**
+     * Reads an index saved by {@link #save}. A missing file gives an empty index.
+     */
+    public static PhotoIndex load(File file) throws IOException {
+        PhotoIndex index = new PhotoIndex();
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return index;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unrecognised photo index " + file);
+            }
+            int count = in.readInt();
+            // Archive names repeat for every photo in them; keep one instance of each
+            Map<String, String> archives = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                long size = in.readLong();
+                long dateModified = in.readLong();
+                String sha256 = in.readUTF();
+                String archive = in.readUTF();
+                String shared = archives.get(archive);
+                if (shared == null) {
+                    archives.put(archive, archive);
+                    shared = archive;
+                }
+                index.add(new Record(id, size, dateModified, sha256, shared, in.readUTF()));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated photo index " + file, e);
+        } finally {
+            in.close();
+        }
+        return index;
+    }
+
+    /** Writes the index through a temporary file, so a crash never leaves it half written. */
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(byId.size());
+            for (Record record : byId.values()) {
+                out.writeLong(record.id);
+                out.writeLong(record.size);
+                out.writeLong(record.dateModified);
+                out.writeUTF(record.sha256);
+                out.writeUTF(record.archive);
+                out.writeUTF(record.entry);
+            }
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /** The archived copy of this exact MediaStore item, if it has not changed since. */
+    public Record findUnchanged(long id, long size, long dateModified) {
+        Record record = byId.get(id);
+        if (record != null && record.size == size && record.dateModified == dateModified) {
+            return record;
+        }
+        return null;
+    }
+
+    /** Whether any archived photo has this size; only then is hashing worth it. */
+    public boolean containsSize(long size) {
+        return sizes.contains(size);
+    }
+
+    public Record findByHash(String sha256) {
+        return byHash.get(sha256);
+    }
+
+    /** Adds or replaces the record for {@code record.id}. */
+    public void add(Record record) {
+        byId.put(record.id, record);
+        // A hash keeps pointing at the first copy archived; later copies are the same bytes
+        if (!byHash.containsKey(record.sha256)) {
+            byHash.put(record.sha256, record);
+        }
+        sizes.add(record.size);
+    }
+
+    /** Adds or replaces every record of {@code other}, keeping records it does not cover. */
+    public void addAll(PhotoIndex other) {
+        for (Record record : other.byId.values()) {
+            add(record);
+        }
+    }
+
+    public int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint journal of a photo archive export, so an export that is killed or
+ * fails part way can resume at its last durable checkpoint instead of starting
+ * over. Each commit appends one frame: the archive's new entries, how far the
+ * metadata spool reached, the running counts and the photos handled since the
+ * previous frame. Frames carry a CRC, and reading stops at the first torn or
+ * corrupt one, so a crash while committing only loses that commit. The header
+ * records what the export selects, so a run with other settings does not
+ * finish an archive begun for different photos.
+ */
+public final class PhotoJournal implements Closeable {
+
+    private static final int MAGIC = 0x504A524E; // "PJRN"
+    private static final int VERSION = 2;
+
+    /** Everything committed to a journal, replayed in order. */
+    public static final class State {
+        public final String archiveName;
+        public final String metadataEntryName;
+        /** DATE_TAKEN range the export was started with. */
+        public final DateRange range;
+        /** Metadata fields the export was started with. */
+        public final FieldSelection fields;
+        /** Whether photos already in earlier archives are referenced rather than copied. */
+        public final boolean reuseArchived;
+        /** Null until the first commit. */
+        public final ZipArchiveWriter.Checkpoint checkpoint;
+        public final long metadataLength;
+        public final int photoCount;
+        public final int copiedCount;
+        public final int referencedCount;
+        /** MediaStore ids of every photo handled, whether copied, referenced or unreadable. */
+        public final Set<Long> handledIds;
+        /** Index records added by the export so far. */
+        public final List<PhotoIndex.Record> records;
+        final long length;
+
+        State(String archiveName, String metadataEntryName, DateRange range, FieldSelection fields,
+              boolean reuseArchived, ZipArchiveWriter.Checkpoint checkpoint,
+              long metadataLength, int photoCount, int copiedCount, int referencedCount,
+              Set<Long> handledIds, List<PhotoIndex.Record> records, long length) {
+            this.archiveName = archiveName;
+            this.metadataEntryName = metadataEntryName;
+            this.range = range;
+            this.fields = fields;
+            this.reuseArchived = reuseArchived;
+            this.checkpoint = checkpoint;
+            this.metadataLength = metadataLength;
+            this.photoCount = photoCount;
+            this.copiedCount = copiedCount;
+            this.referencedCount = referencedCount;
+            this.handledIds = handledIds;
+            this.records = records;
+            this.length = length;
+        }
+
+        /** True if an export with these settings may resume this one. */
+        public boolean isFor(DateRange range, FieldSelection fields, boolean reuseArchived) {
+            return this.range.fromMillis == range.fromMillis && this.range.toMillis == range.toMillis
+                    && this.fields.equals(fields) && this.reuseArchived == reuseArchived;
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    private final CRC32 crc = new CRC32();
+    private int journaledEntries;
+
+    private PhotoJournal(RandomAccessFile file, int journaledEntries) {
+        this.file = file;
+        this.journaledEntries = journaledEntries;
+    }
+
+    /**
+     * Starts a new journal for an export to {@code archiveName}, replacing any old one.
+     * The settings are read back into {@link State} for {@link State#isFor}.
+     */
+    public static PhotoJournal create(File journalFile, String archiveName, String metadataEntryName,
+                                      DateRange range, FieldSelection fields, boolean reuseArchived)
+            throws IOException {
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        try {
+            file.setLength(0);
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeUTF(archiveName);
+            file.writeUTF(metadataEntryName);
+            file.writeLong(range.fromMillis);
+            file.writeLong(range.toMillis);
+            file.writeBoolean(reuseArchived);
+            Set<String> names = fields.getFields();
+            file.writeInt(names != null ? names.size() : -1);
+            if (names != null) {
+                for (String name : names) {
+                    file.writeUTF(name);
+                }
+            }
+            file.getFD().sync();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        return new PhotoJournal(file, 0);
+    }
+
+    /** Reopens a journal read by {@link #read} to commit further frames after its last good one. */
+    public static PhotoJournal append(File journalFile, State state) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        // Drop a torn frame left by the crash
+        file.setLength(state.length);
+        file.seek(state.length);
+        return new PhotoJournal(file, state.checkpoint != null ? state.checkpoint.getEntryCount() : 0);
+    }
+
+    /**
+     * Replays a journal up to its last intact frame.
+     *
+     * @return the committed state, or null if there is no journal or it is not one
+     */
+    public static State read(File journalFile) throws IOException {
+        byte[] bytes;
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "r")) {
+            if (file.length() > Integer.MAX_VALUE) {
+                return null;
+            }
+            bytes = new byte[(int) file.length()];
+            file.readFully(bytes);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        String archiveName;
+        String metadataEntryName;
+        DateRange range;
+        FieldSelection fields;
+        boolean reuseArchived;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            archiveName = in.readUTF();
+            metadataEntryName = in.readUTF();
+            long fromMillis = in.readLong();
+            long toMillis = in.readLong();
+            if (fromMillis > toMillis) {
+                return null;
+            }
+            range = new DateRange(fromMillis, toMillis);
+            reuseArchived = in.readBoolean();
+            int count = in.readInt();
+            if (count < 0) {
+                fields = FieldSelection.ALL;
+            } else {
+                List<String> names = new ArrayList<>(Math.min(count, 256));
+                for (int i = 0; i < count; i++) {
+                    names.add(in.readUTF());
+                }
+                fields = FieldSelection.of(names);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+
+        ZipArchiveWriter.Checkpoint checkpoint = null;
+        long metadataLength = 0;
+        int photoCount = 0;
+        int copiedCount = 0;
+        int referencedCount = 0;
+        Set<Long> handledIds = new HashSet<>();
+        List<PhotoIndex.Record> records = new ArrayList<>();
+        long length = bytes.length - in.available();
+        CRC32 crc = new CRC32();
+        while (in.available() >= 4) {
+            int size = in.readInt();
+            if (size < 0 || size > in.available() - 8) {
+                break;
+            }
+            int start = (int) length + 4;
+            in.skipBytes(size);
+            crc.reset();
+            crc.update(bytes, start, size);
+            if (in.readLong() != crc.getValue()) {
+                break;
+            }
+
+            DataInputStream frame = new DataInputStream(new ByteArrayInputStream(bytes, start, size));
+            checkpoint = ZipArchiveWriter.Checkpoint.readFrom(frame, checkpoint);
+            metadataLength = frame.readLong();
+            photoCount = frame.readInt();
+            copiedCount = frame.readInt();
+            referencedCount = frame.readInt();
+            int handled = frame.readInt();
+            for (int i = 0; i < handled; i++) {
+                handledIds.add(frame.readLong());
+            }
+            int added = frame.readInt();
+            for (int i = 0; i < added; i++) {
+                records.add(new PhotoIndex.Record(frame.readLong(), frame.readLong(), frame.readLong(),
+                        frame.readUTF(), frame.readUTF(), frame.readUTF()));
+            }
+            length = start + size + 8;
+        }
+        return new State(archiveName, metadataEntryName, range, fields, reuseArchived, checkpoint, metadataLength, photoCount, copiedCount,
+                referencedCount, Collections.unmodifiableSet(handledIds), Collections.unmodifiableList(records), length);
+    }
+
+    /**
+     * Durably records a checkpoint. The archive and the metadata spool must
+     * already be synced up to {@code checkpoint} and {@code metadataLength}.
+     *
+     * @param handledIds photos handled since the previous commit
+     * @param records    index records added since the previous commit
+     */
+    public void commit(ZipArchiveWriter.Checkpoint checkpoint, long metadataLength,
+                       int photoCount, int copiedCount, int referencedCount,
+                       List<Long> handledIds, List<PhotoIndex.Record> records) throws IOException {
+        frame.reset();
+        DataOutputStream out = new DataOutputStream(frame);
+        checkpoint.writeTo(out, journaledEntries);
+        out.writeLong(metadataLength);
+        out.writeInt(photoCount);
+        out.writeInt(copiedCount);
+        out.writeInt(referencedCount);
+        out.writeInt(handledIds.size());
+        for (long id : handledIds) {
+            out.writeLong(id);
+        }
+        out.writeInt(records.size());
+        for (PhotoIndex.Record record : records) {
+            out.writeLong(record.id);
+            out.writeLong(record.size);
+            out.writeLong(record.dateModified);
+            out.writeUTF(record.sha256);
+            out.writeUTF(record.archive);
+            out.writeUTF(record.entry);
+        }
+
+        byte[] bytes = frame.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+        file.writeInt(bytes.length);
+        file.write(bytes);
+        file.writeLong(crc.getValue());
+        file.getFD().sync();
+        journaledEntries = checkpoint.getEntryCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.myapplication;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads an {@link ExportProgress} at the caller's rate and turns the counters
+ * into throughput and an ETA per task. Rates are smoothed across samples so a
+ * single slow page does not make the ETA jump. One sampler per display; it is
+ * not thread safe.
+ */
+public final class ProgressSampler {
+
+    // Weight of the newest interval in the smoothed rates
+    private static final double SMOOTHING = 0.3;
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    public static final class Rate {
+        public final String name;
+        public final String unit;
+        public final long items;
+        /** -1 if unknown. */
+        public final long total;
+        public final long bytes;
+        public final double itemsPerSecond;
+        public final double bytesPerSecond;
+        /** -1 while there is no total or no throughput yet. */
+        public final long etaMillis;
+        public final long elapsedMillis;
+        public final boolean finished;
+
+        Rate(ExportProgress.Task task, long items, long bytes, double itemsPerSecond, double bytesPerSecond,
+             long etaMillis, long elapsedMillis, boolean finished) {
+            this.name = task.getName();
+            this.unit = task.getUnit();
+            this.items = items;
+            this.total = task.getTotal();
+            this.bytes = bytes;
+            this.itemsPerSecond = itemsPerSecond;
+            this.bytesPerSecond = bytesPerSecond;
+            this.etaMillis = etaMillis;
+            this.elapsedMillis = elapsedMillis;
+            this.finished = finished;
+        }
+    }
+
+    private static final class Sample {
+        long items;
+        long bytes;
+        long nanos;
+        double itemsPerSecond;
+        double bytesPerSecond;
+    }
+
+    private final Map<ExportProgress.Task, Sample> previous = new IdentityHashMap<>();
+
+    /** One rate per task, in the order the tasks started. */
+    public List<Rate> sample(ExportProgress progress, long nowNanos) {
+        List<Rate> rates = new ArrayList<>();
+        for (ExportProgress.Task task : progress.getTasks()) {
+            long items = task.getItems();
+            long bytes = task.getBytes();
+            long finishNanos = task.getFinishNanos();
+            if (finishNanos >= 0) {
+                // Whole-run averages once a task is done
+                long elapsed = Math.max(1, finishNanos - task.getStartNanos());
+                rates.add(new Rate(task, items, bytes, perSecond(items, elapsed), perSecond(bytes, elapsed),
+                        0, elapsed / 1_000_000L, true));
+                previous.remove(task);
+                continue;
+            }
+
+            Sample last = previous.get(task);
+            if (last == null) {
+                last = new Sample();
+                long elapsed = nowNanos - task.getStartNanos();
+                if (elapsed > 0) {
+                    last.itemsPerSecond = perSecond(items, elapsed);
+                    last.bytesPerSecond = perSecond(bytes, elapsed);
+                }
+                previous.put(task, last);
+            } else if (nowNanos > last.nanos) {
+                long interval = nowNanos - last.nanos;
+                last.itemsPerSecond += SMOOTHING * (perSecond(items - last.items, interval) - last.itemsPerSecond);
+                last.bytesPerSecond += SMOOTHING * (perSecond(bytes - last.bytes, interval) - last.bytesPerSecond);
+            }
+            last.items = items;
+            last.bytes = bytes;
+            last.nanos = nowNanos;
+
+            long total = task.getTotal();
+            long eta = -1;
+            if (total >= 0 && last.itemsPerSecond > 0) {
+                eta = (long) (Math.max(0, total - items) * 1000 / last.itemsPerSecond);
+            }
+            rates.add(new Rate(task, items, bytes, last.itemsPerSecond, last.bytesPerSecond, eta,
+                    (nowNanos - task.getStartNanos()) / 1_000_000L, false));
+        }
+        return rates;
+    }
+
+    /** The phase line followed by one line per task, for a status text or notification. */
+    public String describe(ExportProgress progress, long nowNanos) {
+        List<Rate> rates = sample(progress, nowNanos);
+        StringBuilder text = new StringBuilder(progress.getPhase());
+        int expected = progress.getExpectedTasks();
+        if (expected > 0) {
+            int done = 0;
+            for (Rate rate : rates) {
+                if (rate.finished) {
+                    done++;
+                }
+            }
+            text.append(' ').append(done).append('/').append(expected).append(" done");
+        }
+        for (Rate rate : rates) {
+            text.append('\n').append(describe(rate));
+        }
+        return text.toString();
+    }
+
+    static String describe(Rate rate) {
+        StringBuilder line = new StringBuilder(rate.name).append(": ");
+        if (rate.finished) {
+            line.append(String.format(Locale.ROOT, "%,d %s in %.1f s", rate.items, rate.unit,
+                    rate.elapsedMillis / 1000.0));
+            return line.toString();
+        }
+        if (rate.total >= 0) {
+            line.append(String.format(Locale.ROOT, "%,d/%,d %s", rate.items, rate.total, rate.unit));
+        } else {
+            line.append(String.format(Locale.ROOT, "%,d %s", rate.items, rate.unit));
+        }
+        line.append(String.format(Locale.ROOT, ", %,.0f/s", rate.itemsPerSecond));
+        if (rate.bytes > 0) {
+            line.append(String.format(Locale.ROOT, ", %.1f MB/s", rate.bytesPerSecond / BYTES_PER_MB));
+        }
+        if (rate.etaMillis >= 0) {
+            line.append(", ETA ").append(formatDuration(rate.etaMillis));
+        }
+        return line.toString();
+    }
+
+    static String formatDuration(long millis) {
+        long seconds = (millis + 999) / 1000;
+        if (seconds >= 3600) {
+            return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format(Locale.ROOT, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return count * 1_000_000_000.0 / nanos;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Declarative description of how a provider row becomes an exported record:
+ * the columns to read (which double as the query projection) and the JSON
+ * fields derived from them, in output order.
+ */
+public final class RecordSchema {
+
+    public enum ColumnType { STRING, LONG }
+
+    interface ValueWriter {
+        void write(RowBuffer row, int column, JsonStreamWriter out) throws IOException;
+    }
+
+    static final class Field {
+        final String name;
+        final int column;
+        final ValueWriter writer;
+
+        Field(String name, int column, ValueWriter writer) {
+            this.name = name;
+            this.column = column;
+            this.writer = writer;
+        }
+    }
+
+    private final String[] columns;
+    private final ColumnType[] columnTypes;
+    private final Field[] fields;
+    // Columns read for the caller rather than for a field; kept by every selection
+    private final boolean[] hidden;
+
+    private RecordSchema(Builder builder) {
+        columns = builder.columns.toArray(new String[0]);
+        columnTypes = builder.columnTypes.toArray(new ColumnType[0]);
+        fields = builder.fields.toArray(new Field[0]);
+        hidden = new boolean[columns.length];
+        for (String column : builder.hiddenColumns) {
+            hidden[builder.columns.indexOf(column)] = true;
+        }
+    }
+
+    private RecordSchema(String[] columns, ColumnType[] columnTypes, Field[] fields, boolean[] hidden) {
+        this.columns = columns;
+        this.columnTypes = columnTypes;
+        this.fields = fields;
+        this.hidden = hidden;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Column names in read order; pass this as the provider projection. */
+    public String[] getProjection() {
+        return columns.clone();
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public String getColumnName(int column) {
+        return columns[column];
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columnTypes[column];
+    }
+
+    /** Position of {@code name} in the projection, or -1 if the schema does not read it. */
+    public int columnIndex(String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The schema narrowed to the fields in {@code selection}, reading only the
+     * columns those fields need plus {@code requiredColumns} and any read with
+     * {@link Builder#column}. Field and column order are kept.
+     *
+     * @param requiredColumns columns the caller reads itself, e.g. a paging key
+     */
+    public RecordSchema select(FieldSelection selection, String... requiredColumns) {
+        if (selection.getFields() == null) {
+            return this;
+        }
+        boolean[] keep = hidden.clone();
+        for (String column : requiredColumns) {
+            int index = columnIndex(column);
+            if (index < 0) {
+                throw new IllegalArgumentException("Schema does not read " + column);
+            }
+            keep[index] = true;
+        }
+        List<Field> keptFields = new ArrayList<>();
+        for (Field field : fields) {
+            if (selection.includes(field.name)) {
+                keep[field.column] = true;
+                keptFields.add(field);
+            }
+        }
+
+        int[] remapped = new int[columns.length];
+        String[] keptColumns = new String[columns.length];
+        ColumnType[] keptTypes = new ColumnType[columns.length];
+        boolean[] keptHidden = new boolean[columns.length];
+        int count = 0;
+        for (int i = 0; i < columns.length; i++) {
+            if (keep[i]) {
+                remapped[i] = count;
+                keptColumns[count] = columns[i];
+                keptTypes[count] = columnTypes[i];
+                keptHidden[count] = hidden[i];
+                count++;
+            }
+        }
+        Field[] selectedFields = new Field[keptFields.size()];
+        for (int i = 0; i < selectedFields.length; i++) {
+            Field field = keptFields.get(i);
+            selectedFields[i] = new Field(field.name, remapped[field.column], field.writer);
+        }
+        return new RecordSchema(Arrays.copyOf(keptColumns, count), Arrays.copyOf(keptTypes, count),
+                selectedFields, Arrays.copyOf(keptHidden, count));
+    }
+
+    public RowBuffer newRowBuffer() {
+        return new RowBuffer(columns.length);
+    }
+
+    /** Writes one record as a JSON object. */
+    public void write(RowBuffer row, JsonStreamWriter out) throws IOException {
+        out.beginObject();
+        writeFields(row, out);
+        out.endObject();
+    }
+
+    /** Writes the record's fields into an object the caller has already opened. */
+    public void writeFields(RowBuffer row, JsonStreamWriter out) throws IOException {
+        for (Field field : fields) {
+            out.name(field.name);
+            field.writer.write(row, field.column, out);
+        }
+    }
+
+    public static final class Builder {
+        private final List<String> columns = new ArrayList<>();
+        private final List<ColumnType> columnTypes = new ArrayList<>();
+        private final List<Field> fields = new ArrayList<>();
+        private final List<String> hiddenColumns = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /** String column, exported as "" when null. */
+        public Builder string(String name, String column) {
+            return string(name, column, "");
+        }
+
+        /** String column with an explicit replacement for null. */
+        public Builder string(String name, String column, String nullValue) {
+            return field(name, column, ColumnType.STRING, (row, c, out) -> {
+                String value = row.getString(c);
+                out.value(value != null ? value : nullValue);
+            });
+        }
+
+        /** Integer column, exported as a number. */
+        public Builder number(String name, String column) {
+            return field(name, column, ColumnType.LONG, (row, c, out) -> out.value(row.getLong(c)));
+        }
+
+        /** Integer column where 1 means true. */
+        public Builder flag(String name, String column) {
+            return field(name, column, ColumnType.LONG, (row, c, out) -> out.value(row.getLong(c) == 1));
+        }
+
+        /** Integer code column mapped to a label. */
+        public Builder label(String name, String column, IntFunction<String> labels) {
+            return field(name, column, ColumnType.LONG, (row, c, out) -> out.value(labels.apply((int) row.getLong(c))));
+        }
+
+        /** Epoch-millis column formatted as "yyyy-MM-dd HH:mm:ss". */
+        public Builder date(String name, String column) {
+            return field(name, column, ColumnType.LONG, (row, c, out) -> TimestampFormatter.writeTo(row.getLong(c), out));
+        }
+
+        /**
+         * Formatted timestamp column that may be unset; non-positive values export as "".
+         *
+         * @param unitMillis milliseconds per column unit, e.g. 1000 for epoch seconds
+         */
+        public Builder dateIfSet(String name, String column, long unitMillis) {
+            return field(name, column, ColumnType.LONG, (row, c, out) -> {
+                long value = row.getLong(c);
+                if (value > 0) {
+                    TimestampFormatter.writeTo(value * unitMillis, out);
+                } else {
+                    out.value("");
+                }
+            });
+        }
+
+        /** Reads a column without exporting it directly, e.g. for use by the caller. */
+        public Builder column(String column, ColumnType type) {
+            columnFor(column, type);
+            hiddenColumns.add(column);
+            return this;
+        }
+
+        public RecordSchema build() {
+            return new RecordSchema(this);
+        }
+
+        private Builder field(String name, String column, ColumnType type, ValueWriter writer) {
+            fields.add(new Field(name, columnFor(column, type), writer));
+            return this;
+        }
+
+        private int columnFor(String column, ColumnType type) {
+            int index = columns.indexOf(column);
+            if (index >= 0) {
+                if (columnTypes.get(index) != type) {
+                    throw new IllegalArgumentException("Column " + column + " read as both "
+                            + columnTypes.get(index) + " and " + type);
+                }
+                return index;
+            }
+            columns.add(column);
+            columnTypes.add(type);
+            return columns.size() - 1;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.myapplication;
+
+/**
+ * Reusable holder for one row's column values, filled by a row reader and
+ * consumed by a {@link RecordSchema}. Numeric columns are kept as primitives.
+ */
+public final class RowBuffer {
+
+    private final long[] longs;
+    private final String[] strings;
+
+    RowBuffer(int columnCount) {
+        longs = new long[columnCount];
+        strings = new String[columnCount];
+    }
+
+    public long getLong(int column) {
+        return longs[column];
+    }
+
+    public String getString(int column) {
+        return strings[column];
+    }
+
+    public void setLong(int column, long value) {
+        longs[column] = value;
+    }
+
+    public void setString(int column, String value) {
+        strings[column] = value;
+    }
+
+    public int getColumnCount() {
+        return longs.length;
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+
+/**
+ * Carries one source's encoded section from its worker to the sink. Until the
+ * sink reaches the section, the worker spills to a part file so it can run ahead
+ * of earlier sections; from then on the rest streams through a small bounded
+ * queue, and a slow sink blocks the worker instead of output piling up in
+ * memory or on disk.
+ */
+final class SectionPipe {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final class Chunk {
+        final byte[] data = new byte[CHUNK_SIZE];
+        int length;
+    }
+
+    private final File spillFile;
+    private final int maxChunks;
+    private final ArrayDeque<Chunk> queue = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+
+    // Guarded by this
+    private boolean attached;
+    private boolean spillClosed;
+    private boolean finished;
+    private boolean cancelled;
+    private Throwable failure;
+    private long delivered;
+
+    // Only touched by the producer
+    private OutputStream spillOut;
+    private ExportProgress.Task progress;
+
+    /**
+     * @param maxChunks chunks of {@value #CHUNK_SIZE} bytes queued before the
+     *                  producer blocks on the sink
+     */
+    SectionPipe(File spillFile, int maxChunks) {
+        this.spillFile = spillFile;
+        this.maxChunks = maxChunks;
+    }
+
+    /**
+     * Stream the source writes into. Closing it does not end the section, so a
+     * writer that closes its stream can still fail; call {@link #finish} for that.
+     */
+    OutputStream producer() {
+        return new OutputStream() {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public void write(int b) throws IOException {
+                single[0] = (byte) b;
+                put(single, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                put(b, off, len);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /** Publishes the bytes written to {@code progress}; call from the producer thread before writing. */
+    void setProgress(ExportProgress.Task progress) {
+        this.progress = progress;
+    }
+
+    /** Bytes that have left the producer; once positive, the section can no longer be dropped. */
+    synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /** Ends the section after everything written so far. */
+    void finish() throws IOException {
+        closeSpill();
+        synchronized (this) {
+            if (failure == null) {
+                finished = true;
+            }
+            notifyAll();
+        }
+    }
+
+    /** Ends the section without its remaining bytes; the sink sees the error after what was delivered. */
+    void fail(Throwable error) {
+        closeSpillQuietly();
+        synchronized (this) {
+            if (!finished && failure == null) {
+                failure = error;
+            }
+            spillClosed = true;
+            notifyAll();
+        }
+    }
+
+    /** Releases a producer blocked on a sink that has given up. */
+    synchronized void cancel() {
+        cancelled = true;
+        notifyAll();
+    }
+
+    /**
+     * Marks the sink as reading this section and waits for it to start.
+     *
+     * @return false if the source failed before delivering anything, in which
+     *         case there is nothing to read
+     */
+    synchronized boolean attach() throws InterruptedException {
+        attached = true;
+        notifyAll();
+        while (failure == null && !finished && delivered == 0) {
+            wait();
+        }
+        return failure == null || delivered > 0;
+    }
+
+    /**
+     * The section's bytes in order: everything spilled before {@link #attach},
+     * then the queue. Throws once the bytes run out if the source failed.
+     */
+    InputStream consumer() {
+        return new InputStream() {
+            private InputStream spilled;
+            private boolean spillDone;
+            private Chunk current;
+            private int offset;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int read = read(single, 0, 1);
+                return read == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!spillDone) {
+                    int read = readSpill(b, off, len);
+                    if (read != -1) {
+                        return read;
+                    }
+                }
+                if (current == null) {
+                    current = take();
+                    offset = 0;
+                    if (current == null) {
+                        return -1;
+                    }
+                }
+                int count = Math.min(len, current.length - offset);
+                System.arraycopy(current.data, offset, b, off, count);
+                offset += count;
+                if (offset == current.length) {
+                    recycle(current);
+                    current = null;
+                }
+                return count;
+            }
+
+            private int readSpill(byte[] b, int off, int len) throws IOException {
+                if (spilled == null) {
+                    awaitSpillClosed();
+                    if (!spillFile.exists()) {
+                        spillDone = true;
+                        return -1;
+                    }
+                    spilled = new FileInputStream(spillFile);
+                }
+                int read = spilled.read(b, off, len);
+                if (read == -1) {
+                    spilled.close();
+                    spillDone = true;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (spilled != null) {
+                    spilled.close();
+                }
+            }
+        };
+    }
+
+    private void put(byte[] b, int off, int len) throws IOException {
+        boolean spill;
+        synchronized (this) {
+            checkOpen();
+            spill = !attached;
+        }
+        if (spill) {
+            if (spillOut == null) {
+                spillOut = new FileOutputStream(spillFile);
+            }
+            spillOut.write(b, off, len);
+            long total;
+            synchronized (this) {
+                delivered += len;
+                total = delivered;
+                notifyAll();
+            }
+            publish(total);
+            return;
+        }
+
+        closeSpill();
+        while (len > 0) {
+            long total;
+            synchronized (this) {
+                while (queue.size() >= maxChunks && !cancelled) {
+                    waitInterruptibly();
+                }
+                checkOpen();
+                Chunk chunk = freeChunks.poll();
+                if (chunk == null) {
+                    chunk = new Chunk();
+                }
+                chunk.length = Math.min(len, CHUNK_SIZE);
+                System.arraycopy(b, off, chunk.data, 0, chunk.length);
+                queue.add(chunk);
+                delivered += chunk.length;
+                off += chunk.length;
+                len -= chunk.length;
+                total = delivered;
+                notifyAll();
+            }
+            publish(total);
+        }
+    }
+
+    private void publish(long bytes) {
+        if (progress != null) {
+            progress.setBytes(bytes);
+        }
+    }
+
+    // Once the sink is reading, later bytes go through the queue behind what was spilled
+    private void closeSpill() throws IOException {
+        if (spillOut != null) {
+            spillOut.close();
+            spillOut = null;
+        }
+        synchronized (this) {
+            spillClosed = true;
+            notifyAll();
+        }
+    }
+
+    private void closeSpillQuietly() {
+        try {
+            closeSpill();
+        } catch (IOException ignored) {
+            // The section is failing anyway
+        }
+    }
+
+    private synchronized void awaitSpillClosed() throws IOException {
+        while (!spillClosed && !cancelled) {
+            waitInterruptibly();
+        }
+        checkOpen();
+    }
+
+    private synchronized Chunk take() throws IOException {
+        while (queue.isEmpty() && !finished && failure == null && !cancelled) {
+            waitInterruptibly();
+        }
+        Chunk chunk = queue.poll();
+        if (chunk != null) {
+            notifyAll();
+            return chunk;
+        }
+        if (failure != null) {
+            throw new IOException("Source failed", failure);
+        }
+        checkOpen();
+        return null;
+    }
+
+    private synchronized void recycle(Chunk chunk) {
+        freeChunks.add(chunk);
+    }
+
+    private void checkOpen() throws IOException {
+        if (cancelled) {
+            throw new InterruptedIOException("Export cancelled");
+        }
+    }
+
+    private void waitInterruptibly() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the sink");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.myapplication;
+
+/**
+ * Counters one export source fills in while it runs. A source is extracted on a
+ * single thread, so the counters are plain fields; the engine only reads them
+ * after the source has finished. The row count is also published to an
+ * {@link ExportProgress.Task}, if given, for live progress.
+ *
+ * <p>Peak heap is sampled from the whole process every {@value #HEAP_SAMPLE_ROWS}
+ * rows, so with parallel sources it includes memory held by the others.
+ */
+public final class SourceMetrics {
+
+    static final int HEAP_SAMPLE_ROWS = 256;
+
+    private final long startNanos;
+    private long queryNanos;
+    private long firstRowNanos = -1;
+    private long rows;
+    private long skippedRows;
+    private long peakHeapBytes;
+    private final ExportProgress.Task progress;
+
+    public SourceMetrics() {
+        this(null);
+    }
+
+    public SourceMetrics(ExportProgress.Task progress) {
+        this.progress = progress;
+        startNanos = System.nanoTime();
+        sampleHeap();
+    }
+
+    /** @return a token to pass to {@link #queryFinished} */
+    public long queryStarted() {
+        return System.nanoTime();
+    }
+
+    /** Adds the time since {@code token} to the query latency; call once per query or page. */
+    public void queryFinished(long token) {
+        queryNanos += System.nanoTime() - token;
+    }
+
+    /** Counts a row written to the output. */
+    public void rowWritten() {
+        firstRow();
+        rows++;
+        if (progress != null) {
+            progress.setItems(rows);
+        }
+        if (rows % HEAP_SAMPLE_ROWS == 0) {
+            sampleHeap();
+        }
+    }
+
+    /** Counts a row that was read but dropped because it could not be converted. */
+    public void rowSkipped() {
+        firstRow();
+        skippedRows++;
+    }
+
+    public void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        peakHeapBytes = Math.max(peakHeapBytes, runtime.totalMemory() - runtime.freeMemory());
+    }
+
+    private void firstRow() {
+        if (firstRowNanos < 0) {
+            firstRowNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    public long getQueryMillis() {
+        return queryNanos / 1_000_000L;
+    }
+
+    /** Milliseconds from the start of the source to its first row, or -1 if it had none. */
+    public long getFirstRowMillis() {
+        return firstRowNanos < 0 ? -1 : firstRowNanos / 1_000_000L;
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+}
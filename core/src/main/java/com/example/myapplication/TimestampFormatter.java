@@ -0,0 +1,183 @@
+package com.example.myapplication;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats epoch millis as "yyyy-MM-dd HH:mm:ss" in the default locale and time
+ * zone, byte-for-byte like {@code new SimpleDateFormat(PATTERN, Locale.getDefault())}.
+ *
+ * <p>Each thread caches the date prefix of the local day it last saw; timestamps
+ * inside that day only need their time fields written into a reused buffer.
+ * Days containing an offset change, and locales whose calendar or digits differ
+ * from ASCII Gregorian, go through a cached SimpleDateFormat instead.
+ */
+public final class TimestampFormatter {
+
+    public static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    private static final int LENGTH = PATTERN.length();
+    private static final int TIME_OFFSET = 11;
+
+    private static final ThreadLocal<State> STATE = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    private TimestampFormatter() {
+    }
+
+    public static String format(long millis) {
+        State state = STATE.get();
+        if (!state.formatFast(millis)) {
+            return state.formatSlow(millis);
+        }
+        return new String(state.chars, 0, LENGTH);
+    }
+
+    /** Writes the formatted timestamp as a JSON string without an intermediate String. */
+    public static void writeTo(long millis, JsonStreamWriter out) throws IOException {
+        State state = STATE.get();
+        if (state.formatFast(millis)) {
+            out.value(state.chars, 0, LENGTH);
+        } else {
+            out.value(state.formatSlow(millis));
+        }
+    }
+
+    private static final class State {
+        final char[] chars = new char[LENGTH];
+
+        Locale locale;
+        TimeZone zone;
+        boolean asciiGregorian;
+        SimpleDateFormat fallback;
+        Calendar calendar;
+        final Date date = new Date();
+
+        // Current local day as [dayStart, dayEnd) in UTC millis; fast only when dayFast
+        long dayStart = 1;
+        long dayEnd = 0;
+        boolean dayFast;
+
+        boolean formatFast(long millis) {
+            if (Locale.getDefault() != locale) {
+                reset();
+            }
+            if (!asciiGregorian) {
+                return false;
+            }
+            if (millis < dayStart || millis >= dayEnd) {
+                loadDay(millis);
+            }
+            if (!dayFast) {
+                return false;
+            }
+            int secondOfDay = (int) ((millis - dayStart) / 1000L);
+            writeTwoDigits(TIME_OFFSET, secondOfDay / 3600);
+            writeTwoDigits(TIME_OFFSET + 3, (secondOfDay / 60) % 60);
+            writeTwoDigits(TIME_OFFSET + 6, secondOfDay % 60);
+            return true;
+        }
+
+        String formatSlow(long millis) {
+            if (!asciiGregorian) {
+                syncZone();
+            }
+            date.setTime(millis);
+            return fallback.format(date);
+        }
+
+        private void reset() {
+            locale = Locale.getDefault();
+            zone = TimeZone.getDefault();
+            fallback = new SimpleDateFormat(PATTERN, locale);
+            calendar = (Calendar) fallback.getCalendar().clone();
+            asciiGregorian = calendar.getClass() == GregorianCalendar.class
+                    && fallback.format(new Date(0)).length() == LENGTH
+                    && isAsciiDigits(fallback.format(new Date(1234567890123L)));
+            dayStart = 1;
+            dayEnd = 0;
+        }
+
+        private void loadDay(long millis) {
+            // The zone is only re-read per day so the hot path never clones TimeZone
+            syncZone();
+            calendar.setTimeInMillis(millis);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            dayStart = calendar.getTimeInMillis();
+            boolean startsAtMidnight = calendar.get(Calendar.HOUR_OF_DAY) == 0
+                    && calendar.get(Calendar.MINUTE) == 0;
+            int year = calendar.get(Calendar.YEAR);
+            int month = calendar.get(Calendar.MONTH) + 1;
+            int day = calendar.get(Calendar.DAY_OF_MONTH);
+
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            dayEnd = calendar.getTimeInMillis();
+
+            if (millis < dayStart || millis >= dayEnd) {
+                // Midnight skipped or repeated by a transition; don't cache this instant
+                dayStart = millis;
+                dayEnd = millis + 1;
+                dayFast = false;
+                return;
+            }
+
+            // A constant offset across the day makes local time linear in UTC millis
+            dayFast = startsAtMidnight
+                    && year <= 9999
+                    && zone.getOffset(dayStart) == zone.getOffset(dayEnd - 1);
+            if (dayFast) {
+                writeYear(year);
+                chars[4] = '-';
+                writeTwoDigits(5, month);
+                chars[7] = '-';
+                writeTwoDigits(8, day);
+                chars[10] = ' ';
+                chars[13] = ':';
+                chars[16] = ':';
+            }
+        }
+
+        private void syncZone() {
+            TimeZone current = TimeZone.getDefault();
+            if (!current.equals(zone)) {
+                zone = current;
+                fallback.setTimeZone(current);
+                calendar.setTimeZone(current);
+            }
+        }
+
+        private void writeYear(int year) {
+            chars[0] = (char) ('0' + year / 1000);
+            chars[1] = (char) ('0' + (year / 100) % 10);
+            chars[2] = (char) ('0' + (year / 10) % 10);
+            chars[3] = (char) ('0' + year % 10);
+        }
+
+        private void writeTwoDigits(int offset, int value) {
+            chars[offset] = (char) ('0' + value / 10);
+            chars[offset + 1] = (char) ('0' + value % 10);
+        }
+
+        private static boolean isAsciiDigits(String formatted) {
+            for (int i = 0; i < formatted.length(); i++) {
+                char c = formatted.charAt(i);
+                if (c > 0x7F) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
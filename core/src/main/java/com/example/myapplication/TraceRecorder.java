@@ -0,0 +1,111 @@
+package com.example.myapplication;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records sections in memory and writes them in the Chrome trace event JSON
+ * format, which Perfetto UI and chrome://tracing open directly. Each section
+ * becomes one complete ("X") event on the thread that ran it.
+ */
+public final class TraceRecorder implements Tracer {
+
+    /** Beyond this, sections are counted as dropped instead of kept. */
+    static final int MAX_EVENTS = 200_000;
+
+    private static final class Event {
+        final String name;
+        final long threadId;
+        final long beginNanos;
+        final long endNanos;
+
+        Event(String name, long threadId, long beginNanos, long endNanos) {
+            this.name = name;
+            this.threadId = threadId;
+            this.beginNanos = beginNanos;
+            this.endNanos = endNanos;
+        }
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger eventCount = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+    @Override
+    public Section begin(String name) {
+        Thread thread = Thread.currentThread();
+        long threadId = thread.getId();
+        threadNames.putIfAbsent(threadId, thread.getName());
+        long begin = System.nanoTime();
+        return () -> record(new Event(name, threadId, begin, System.nanoTime()));
+    }
+
+    private void record(Event event) {
+        if (eventCount.incrementAndGet() > MAX_EVENTS) {
+            dropped.incrementAndGet();
+            return;
+        }
+        events.add(event);
+    }
+
+    public int getEventCount() {
+        return events.size();
+    }
+
+    /** Writes the sections closed so far; still-open ones are left out. */
+    public void writeTo(JsonStreamWriter out) throws IOException {
+        out.beginObject();
+        out.name("displayTimeUnit").value("ms");
+        out.name("traceEvents").beginArray();
+        out.beginObject();
+        out.name("name").value("process_name");
+        out.name("ph").value("M");
+        out.name("pid").value(1);
+        out.name("args").beginObject().name("name").value("export").endObject();
+        out.endObject();
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            out.beginObject();
+            out.name("name").value("thread_name");
+            out.name("ph").value("M");
+            out.name("pid").value(1);
+            out.name("tid").value(thread.getKey());
+            out.name("args").beginObject().name("name").value(thread.getValue()).endObject();
+            out.endObject();
+        }
+        for (Event event : events) {
+            out.beginObject();
+            out.name("name").value(event.name);
+            out.name("cat").value("export");
+            out.name("ph").value("X");
+            out.name("ts").value(micros(event.beginNanos));
+            out.name("dur").value((event.endNanos - event.beginNanos) / 1_000L);
+            out.name("pid").value(1);
+            out.name("tid").value(event.threadId);
+            out.endObject();
+        }
+        out.endArray();
+        out.name("otherData").beginObject();
+        out.name("dropped_events").value(dropped.get());
+        out.endObject();
+        out.endObject();
+    }
+
+    public void writeTo(File file) throws IOException {
+        try (JsonStreamWriter out = new JsonStreamWriter(
+                new BufferedOutputStream(new FileOutputStream(file)), null)) {
+            writeTo(out);
+        }
+    }
+
+    private long micros(long nanos) {
+        return (nanos - startNanos) / 1_000L;
+    }
+}
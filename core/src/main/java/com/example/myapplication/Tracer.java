@@ -0,0 +1,19 @@
+package com.example.myapplication;
+
+/**
+ * Marks named phases of an export so a trace shows where its time goes.
+ * Sections nest, and each must be closed on the thread that began it.
+ */
+public interface Tracer {
+
+    interface Section extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    Section NO_SECTION = () -> { };
+
+    Tracer NONE = name -> NO_SECTION;
+
+    Section begin(String name);
+}
@@ -0,0 +1,709 @@
+package com.example.myapplication;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Single-pass ZIP writer over a seekable file. Entry data is streamed once and
+ * the local header is patched afterwards with the CRC and sizes, so STORED
+ * entries need neither a pre-read nor a data descriptor. Writes ZIP64 records
+ * when entry sizes, offsets or the entry count require them.
+ *
+ * <p>With more than one compression thread, DEFLATED entries are compressed by a
+ * {@link ParallelDeflater}: fixed chunks deflated concurrently into one ordinary
+ * deflate stream that any unzip tool can read.
+ *
+ * <p>{@link #sync} makes the finished entries durable and returns a
+ * {@link Checkpoint}; an archive cut short by a crash can be reopened at its last
+ * checkpoint and appended to, instead of being written again from the start.
+ *
+ * <p>Output is staged in a direct buffer, so flushing it hands the channel memory
+ * it can write from without another copy.
+ */
+public final class ZipArchiveWriter implements Closeable {
+
+    public static final int STORED = ZipEntry.STORED;
+    public static final int DEFLATED = ZipEntry.DEFLATED;
+
+    /** Thrown when the entry's source fails; the entry has already been rolled back. */
+    public static final class SourceException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        SourceException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    // Blocks per buffer: whole blocks per write, and few enough writes per MB
+    private static final int BLOCKS_PER_BUFFER = 128;
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRY_LIMIT = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final class Entry {
+        final byte[] name;
+        final int method;
+        final long headerOffset;
+        final boolean zip64Header;
+        long crc;
+        long compressedSize;
+        long size;
+
+        Entry(byte[] name, int method, long headerOffset, boolean zip64Header) {
+            this.name = name;
+            this.method = method;
+            this.headerOffset = headerOffset;
+            this.zip64Header = zip64Header;
+        }
+    }
+
+    /**
+     * The finished entries of an archive and the offset they end at: enough to
+     * reopen the archive and keep appending after everything past it is lost.
+     */
+    public static final class Checkpoint {
+        final long position;
+        final int dosTime;
+        final List<Entry> entries;
+
+        Checkpoint(long position, int dosTime, List<Entry> entries) {
+            this.position = position;
+            this.dosTime = dosTime;
+            this.entries = entries;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public int getEntryCount() {
+            return entries.size();
+        }
+
+        /**
+         * Writes the end offset and the entries from {@code fromEntry} on, so a
+         * journal only has to record what changed since its previous checkpoint.
+         */
+        public void writeTo(DataOutput out, int fromEntry) throws IOException {
+            out.writeLong(position);
+            out.writeInt(dosTime);
+            out.writeInt(fromEntry);
+            out.writeInt(entries.size() - fromEntry);
+            for (int i = fromEntry; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                out.writeShort(entry.name.length);
+                out.write(entry.name);
+                out.writeByte(entry.method);
+                out.writeLong(entry.headerOffset);
+                out.writeBoolean(entry.zip64Header);
+                out.writeInt((int) entry.crc);
+                out.writeLong(entry.compressedSize);
+                out.writeLong(entry.size);
+            }
+        }
+
+        /**
+         * Reads a checkpoint written by {@link #writeTo} on top of {@code previous},
+         * the checkpoint it was written after, or null for the first one.
+         */
+        public static Checkpoint readFrom(DataInput in, Checkpoint previous) throws IOException {
+            long position = in.readLong();
+            int dosTime = in.readInt();
+            int fromEntry = in.readInt();
+            int count = in.readInt();
+            int known = previous != null ? previous.entries.size() : 0;
+            if (fromEntry != known || count < 0) {
+                throw new IOException("Checkpoint does not follow the previous one");
+            }
+            List<Entry> entries = new ArrayList<>(known + count);
+            if (previous != null) {
+                entries.addAll(previous.entries);
+            }
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[in.readUnsignedShort()];
+                in.readFully(name);
+                Entry entry = new Entry(name, in.readUnsignedByte(), in.readLong(), in.readBoolean());
+                entry.crc = in.readInt() & 0xFFFFFFFFL;
+                entry.compressedSize = in.readLong();
+                entry.size = in.readLong();
+                entries.add(entry);
+            }
+            return new Checkpoint(position, dosTime, entries);
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position;
+    private long bytesIn;
+
+    private final byte[] readBuffer = new byte[64 * 1024];
+    private final byte[] deflateBuffer = new byte[64 * 1024];
+    private final Deflater deflater;
+    private final ParallelDeflater parallelDeflater;
+    private final ParallelDeflater.Sink output = this::writeBytes;
+    private final CRC32 crc = new CRC32();
+    private final int dosTime;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private Entry current;
+    private long currentDataStart;
+    private boolean closed;
+    private Tracer tracer = Tracer.NONE;
+
+    /**
+     * @param level deflate level used for DEFLATED entries
+     */
+    public ZipArchiveWriter(File target, int level) throws IOException {
+        this(target, level, 1);
+    }
+
+    /**
+     * @param level   deflate level used for DEFLATED entries
+     * @param threads compression threads; 1 deflates inline on the calling thread
+     */
+    public ZipArchiveWriter(File target, int level, int threads) throws IOException {
+        this(target, level, threads, null);
+    }
+
+    /**
+     * Reopens {@code target} at {@code checkpoint} with the default buffer size.
+     */
+    public ZipArchiveWriter(File target, int level, int threads, Checkpoint checkpoint) throws IOException {
+        this(target, level, threads, checkpoint, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Reopens {@code target} at {@code checkpoint}, discarding anything written
+     * after it, so further entries are appended to the ones it lists.
+     *
+     * @param checkpoint taken by {@link #sync} on an earlier writer of the same
+     *                   file, or null to start an empty archive
+     * @param bufferSize bytes staged between writes, see {@link #bufferSizeFor}
+     */
+    public ZipArchiveWriter(File target, int level, int threads, Checkpoint checkpoint, int bufferSize)
+            throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize must be at least " + MIN_BUFFER_SIZE);
+        }
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+        file = new RandomAccessFile(target, "rw");
+        if (checkpoint == null) {
+            file.setLength(0);
+            dosTime = toDosTime(System.currentTimeMillis());
+        } else {
+            if (file.length() < checkpoint.position) {
+                file.close();
+                throw new IOException("Archive " + target + " is shorter than its checkpoint");
+            }
+            file.setLength(checkpoint.position);
+            entries.addAll(checkpoint.entries);
+            position = checkpoint.position;
+            // Entries already written carry this time in their local headers
+            dosTime = checkpoint.dosTime;
+        }
+        channel = file.getChannel();
+        channel.position(position);
+        if (threads == 1) {
+            deflater = new Deflater(level, true);
+            parallelDeflater = null;
+        } else {
+            deflater = null;
+            parallelDeflater = new ParallelDeflater(level, threads, "zip");
+        }
+    }
+
+    /**
+     * Buffer size for a file system with {@code blockSize} byte blocks, e.g. from
+     * StatFs: a whole number of blocks between 64 KB and 1 MB, or the default if
+     * the block size is unknown.
+     */
+    public static int bufferSizeFor(long blockSize) {
+        if (blockSize <= 0 || blockSize > MAX_BUFFER_SIZE) {
+            return DEFAULT_BUFFER_SIZE;
+        }
+        long size = blockSize * BLOCKS_PER_BUFFER;
+        if (size < MIN_BUFFER_SIZE) {
+            size = (MIN_BUFFER_SIZE + blockSize - 1) / blockSize * blockSize;
+        }
+        return (int) Math.min(size, MAX_BUFFER_SIZE / blockSize * blockSize);
+    }
+
+    /** Traces chunk compression on the worker threads and header patching on the caller. */
+    public ZipArchiveWriter setTracer(Tracer tracer) {
+        this.tracer = tracer;
+        if (parallelDeflater != null) {
+            parallelDeflater.setTracer(tracer);
+        }
+        return this;
+    }
+
+    /**
+     * Streams {@code in} into a new entry.
+     *
+     * @param sizeHint expected uncompressed size, or -1 if unknown; entries that may
+     *                 reach 4 GB get a ZIP64 local header
+     * @throws SourceException if reading {@code in} fails; the archive is left as it
+     *                         was before the call
+     */
+    public void addEntry(String name, int method, InputStream in, long sizeHint) throws IOException {
+        startEntry(name, method, sizeHint);
+        while (true) {
+            int read;
+            try {
+                read = in.read(readBuffer);
+            } catch (IOException e) {
+                abortEntry();
+                throw new SourceException(e);
+            }
+            if (read == -1) {
+                break;
+            }
+            writeEntryData(readBuffer, 0, read);
+        }
+        finishEntry();
+    }
+
+    /**
+     * Copies {@code source} from its position to its end into a new entry. STORED
+     * data moves from the channel into the direct output buffer and from there to
+     * the archive without passing through the Java heap. Computes the CRC with
+     * {@link CRC32#update(ByteBuffer)}, which Android has from API 26 on.
+     *
+     * @param observer sees every byte of the entry in order, e.g. to hash it; may be null
+     * @throws SourceException if reading {@code source} fails; the archive is left as
+     *                         it was before the call
+     */
+    public void addEntry(String name, int method, ReadableByteChannel source, long sizeHint,
+                         Consumer<ByteBuffer> observer) throws IOException {
+        startEntry(name, method, sizeHint);
+        if (method == DEFLATED) {
+            // The deflater takes arrays, so compressed entries read through the heap
+            ByteBuffer heap = ByteBuffer.wrap(readBuffer);
+            while (true) {
+                heap.clear();
+                if (readSource(source, heap) == -1) {
+                    break;
+                }
+                if (observer != null) {
+                    observer.accept(ByteBuffer.wrap(readBuffer, 0, heap.position()));
+                }
+                writeEntryData(readBuffer, 0, heap.position());
+            }
+        } else {
+            flushBuffer();
+            while (readSource(source, buffer) != -1) {
+                if (!buffer.hasRemaining()) {
+                    flushStored(observer);
+                }
+            }
+            flushStored(observer);
+        }
+        finishEntry();
+    }
+
+    private int readSource(ReadableByteChannel source, ByteBuffer target) throws IOException {
+        try {
+            return source.read(target);
+        } catch (IOException e) {
+            abortEntry();
+            throw new SourceException(e);
+        }
+    }
+
+    // Checksums the data read into the output buffer and writes it out as entry data
+    private void flushStored(Consumer<ByteBuffer> observer) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        crc.update(buffer.duplicate());
+        if (observer != null) {
+            observer.accept(buffer.duplicate());
+        }
+        writeFully(buffer, -1);
+        buffer.clear();
+        current.size += length;
+        position += length;
+    }
+
+    /**
+     * Opens an entry written through the returned stream; closing the stream
+     * completes the entry but leaves the archive open.
+     */
+    public OutputStream openEntry(String name, int method) throws IOException {
+        startEntry(name, method, -1);
+        Entry entry = current;
+        return new OutputStream() {
+            private boolean finished;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (finished || current != entry) {
+                    throw new IOException("Entry is closed");
+                }
+                writeEntryData(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!finished && current == entry) {
+                    finished = true;
+                    finishEntry();
+                }
+            }
+        };
+    }
+
+    /**
+     * Forces everything written so far to storage and returns a checkpoint the
+     * archive can be reopened at. No entry may be open.
+     */
+    public Checkpoint sync() throws IOException {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + new String(current.name, StandardCharsets.UTF_8) + " is still open");
+        }
+        flushBuffer();
+        channel.force(false);
+        return new Checkpoint(position, dosTime, new ArrayList<>(entries));
+    }
+
+    /** Bytes written to the archive so far. */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Uncompressed bytes of the entries this writer added, not counting those
+     * kept from a checkpoint.
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (current != null) {
+                abortEntry();
+            }
+            try (Tracer.Section ignored = tracer.begin("zip central directory")) {
+                writeCentralDirectory();
+                flushBuffer();
+            }
+        } finally {
+            if (parallelDeflater != null) {
+                parallelDeflater.close();
+            }
+            if (deflater != null) {
+                deflater.end();
+            }
+            file.close();
+        }
+    }
+
+    private void startEntry(String name, int method, long sizeHint) throws IOException {
+        if (current != null) {
+            throw new IllegalStateException("Previous entry " + new String(current.name, StandardCharsets.UTF_8) + " is still open");
+        }
+        if (method != STORED && method != DEFLATED) {
+            throw new IllegalArgumentException("Unsupported method " + method);
+        }
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = sizeHint >= ZIP64_LIMIT - (ZIP64_LIMIT >> 6);
+        current = new Entry(nameBytes, method, position, zip64);
+
+        writeInt(0x04034b50);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(FLAG_UTF8);
+        writeShort(method);
+        writeInt(dosTime);
+        writeInt(0); // crc, patched
+        writeInt(zip64 ? (int) ZIP64_LIMIT : 0); // compressed size, patched
+        writeInt(zip64 ? (int) ZIP64_LIMIT : 0); // size, patched
+        writeShort(nameBytes.length);
+        writeShort(zip64 ? 20 : 0);
+        writeBytes(nameBytes, 0, nameBytes.length);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(0);
+            writeLong(0);
+        }
+
+        currentDataStart = position;
+        crc.reset();
+        current.size = 0;
+        if (method == DEFLATED) {
+            if (parallelDeflater != null) {
+                parallelDeflater.start();
+            } else {
+                deflater.reset();
+            }
+        }
+    }
+
+    private void writeEntryData(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        crc.update(b, off, len);
+        current.size += len;
+        if (current.method == STORED) {
+            writeBytes(b, off, len);
+        } else if (parallelDeflater != null) {
+            parallelDeflater.write(b, off, len, output);
+        } else {
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                drainDeflater();
+            }
+        }
+    }
+
+    private void finishEntry() throws IOException {
+        Entry entry = current;
+        if (entry.method == DEFLATED && parallelDeflater != null) {
+            parallelDeflater.finish(output);
+        } else if (entry.method == DEFLATED) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drainDeflater();
+            }
+        }
+        entry.crc = crc.getValue();
+        entry.compressedSize = position - currentDataStart;
+
+        boolean overflow = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+        if (overflow && !entry.zip64Header) {
+            abortEntry();
+            throw new ZipException("Entry " + new String(entry.name, StandardCharsets.UTF_8)
+                    + " exceeds 4 GB but was not declared as large");
+        }
+
+        try (Tracer.Section ignored = tracer.begin("zip patch header")) {
+            flushBuffer();
+            ByteBuffer patch = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            patch.putInt((int) entry.crc);
+            if (entry.zip64Header) {
+                patch.putInt((int) ZIP64_LIMIT).putInt((int) ZIP64_LIMIT);
+            } else {
+                patch.putInt((int) entry.compressedSize).putInt((int) entry.size);
+            }
+            patch.flip();
+            writeFully(patch, entry.headerOffset + 14);
+            if (entry.zip64Header) {
+                ByteBuffer sizes = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                sizes.putLong(entry.size).putLong(entry.compressedSize).flip();
+                writeFully(sizes, entry.headerOffset + 30 + entry.name.length + 4);
+            }
+        }
+
+        entries.add(entry);
+        bytesIn += entry.size;
+        current = null;
+    }
+
+    private void abortEntry() throws IOException {
+        if (parallelDeflater != null) {
+            parallelDeflater.abort();
+        }
+        flushBuffer();
+        channel.truncate(current.headerOffset);
+        channel.position(current.headerOffset);
+        position = current.headerOffset;
+        current = null;
+    }
+
+    private void drainDeflater() throws IOException {
+        int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.NO_FLUSH);
+        if (length > 0) {
+            writeBytes(deflateBuffer, 0, length);
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long directoryOffset = position;
+        for (Entry entry : entries) {
+            boolean sizeOverflow = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+            boolean offsetOverflow = entry.headerOffset >= ZIP64_LIMIT;
+            int extraLength = (sizeOverflow ? 16 : 0) + (offsetOverflow ? 8 : 0);
+
+            writeInt(0x02014b50);
+            writeShort(VERSION_ZIP64);
+            writeShort(extraLength > 0 || entry.zip64Header ? VERSION_ZIP64 : VERSION_DEFAULT);
+            writeShort(FLAG_UTF8);
+            writeShort(entry.method);
+            writeInt(dosTime);
+            writeInt((int) entry.crc);
+            writeInt(sizeOverflow ? (int) ZIP64_LIMIT : (int) entry.compressedSize);
+            writeInt(sizeOverflow ? (int) ZIP64_LIMIT : (int) entry.size);
+            writeShort(entry.name.length);
+            writeShort(extraLength > 0 ? extraLength + 4 : 0);
+            writeShort(0); // comment
+            writeShort(0); // disk
+            writeShort(0); // internal attributes
+            writeInt(0); // external attributes
+            writeInt(offsetOverflow ? (int) ZIP64_LIMIT : (int) entry.headerOffset);
+            writeBytes(entry.name, 0, entry.name.length);
+            if (extraLength > 0) {
+                writeShort(ZIP64_EXTRA_ID);
+                writeShort(extraLength);
+                if (sizeOverflow) {
+                    writeLong(entry.size);
+                    writeLong(entry.compressedSize);
+                }
+                if (offsetOverflow) {
+                    writeLong(entry.headerOffset);
+                }
+            }
+        }
+        long directorySize = position - directoryOffset;
+
+        int count = entries.size();
+        boolean zip64 = count >= ZIP64_ENTRY_LIMIT || directoryOffset >= ZIP64_LIMIT || directorySize >= ZIP64_LIMIT;
+        if (zip64) {
+            long zip64RecordOffset = position;
+            writeInt(0x06064b50);
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(count);
+            writeLong(count);
+            writeLong(directorySize);
+            writeLong(directoryOffset);
+
+            writeInt(0x07064b50);
+            writeInt(0);
+            writeLong(zip64RecordOffset);
+            writeInt(1);
+        }
+
+        writeInt(0x06054b50);
+        writeShort(0);
+        writeShort(0);
+        writeShort(zip64 ? ZIP64_ENTRY_LIMIT : count);
+        writeShort(zip64 ? ZIP64_ENTRY_LIMIT : count);
+        writeInt(zip64 ? (int) ZIP64_LIMIT : (int) directorySize);
+        writeInt(zip64 ? (int) ZIP64_LIMIT : (int) directoryOffset);
+        writeShort(0);
+    }
+
+    private void writeShort(int value) throws IOException {
+        writeByte(value);
+        writeByte(value >>> 8);
+    }
+
+    private void writeInt(int value) throws IOException {
+        writeShort(value);
+        writeShort(value >>> 16);
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) value);
+        writeInt((int) (value >>> 32));
+    }
+
+    private void writeByte(int value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) value);
+        position++;
+    }
+
+    private void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (len > buffer.remaining()) {
+            flushBuffer();
+        }
+        // Fill and flush rather than writing the array directly: the channel would
+        // copy a heap buffer into a temporary direct one anyway
+        while (len > 0) {
+            int count = Math.min(len, buffer.remaining());
+            buffer.put(b, off, count);
+            off += count;
+            len -= count;
+            position += count;
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() > 0) {
+            buffer.flip();
+            writeFully(buffer, -1);
+            buffer.clear();
+        }
+    }
+
+    // Writes at the channel position, or at an absolute offset without moving it
+    private void writeFully(ByteBuffer data, long offset) throws IOException {
+        while (data.hasRemaining()) {
+            if (offset < 0) {
+                channel.write(data);
+            } else {
+                offset += channel.write(data, offset);
+            }
+        }
+    }
+
+    private static int toDosTime(long millis) {
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(millis);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+}
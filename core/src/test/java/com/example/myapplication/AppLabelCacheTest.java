@@ -0,0 +1,38 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class AppLabelCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void load_reusesLabelsOfUnchangedPackagesInSameLocale() throws Exception {
+        File file = new File(temp.getRoot(), "labels.bin");
+        AppLabelCache cache = AppLabelCache.load(file, "en-US");
+        assertEquals(0, cache.size());
+        cache.put("com.example.mail", 100, "Mail");
+        cache.put("com.example.maps", 200, "Maps");
+        cache.save(file);
+
+        AppLabelCache loaded = AppLabelCache.load(file, "en-US");
+        assertFalse(loaded.isChanged());
+        assertEquals("Mail", loaded.get("com.example.mail", 100));
+        // Updated since, so the label may have changed too
+        assertNull(loaded.get("com.example.maps", 201));
+
+        loaded.retainAll(Collections.singleton("com.example.mail"));
+        assertTrue(loaded.isChanged());
+        assertEquals(1, loaded.size());
+
+        assertEquals(0, AppLabelCache.load(file, "de-DE").size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ColumnarWriterTest {
+
+    private static final RecordSchema SCHEMA = RecordSchema.builder()
+            .number("id", "_id")
+            .string("address", "address")
+            .date("date", "date")
+            .label("type", "type", code -> code == 1 ? "received" : "sent")
+            .string("body", "body")
+            .build();
+
+    @Test
+    public void roundTrip_keepsEveryValueAcrossBlocks() throws IOException {
+        int rows = ColumnarWriter.BLOCK_ROWS * 2 + 17;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ColumnarWriter writer = new ColumnarWriter(bytes, SCHEMA)) {
+            RowBuffer row = SCHEMA.newRowBuffer();
+            for (int i = 0; i < rows; i++) {
+                fill(row, i);
+                writer.write(row);
+            }
+            assertEquals(rows, writer.getRowCount());
+        }
+
+        try (ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(5, reader.getColumnCount());
+            assertEquals(RecordSchema.ColumnType.LONG, reader.getColumnType(reader.columnIndex("date")));
+            RowBuffer expected = SCHEMA.newRowBuffer();
+            int count = 0;
+            while (reader.next()) {
+                fill(expected, count);
+                for (int c = 0; c < SCHEMA.getColumnCount(); c++) {
+                    if (SCHEMA.getColumnType(c) == RecordSchema.ColumnType.LONG) {
+                        assertEquals(expected.getLong(c), reader.getLong(c));
+                    } else {
+                        assertEquals(expected.getString(c), reader.getString(c));
+                    }
+                }
+                count++;
+            }
+            assertEquals(rows, count);
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void encoding_isMuchSmallerThanJson() throws IOException {
+        ByteArrayOutputStream columnar = new ByteArrayOutputStream();
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (ColumnarWriter writer = new ColumnarWriter(columnar, SCHEMA);
+             JsonStreamWriter out = new JsonStreamWriter(json, null)) {
+            RowBuffer row = SCHEMA.newRowBuffer();
+            out.beginArray();
+            for (int i = 0; i < 10_000; i++) {
+                fill(row, i);
+                writer.write(row);
+                SCHEMA.write(row, out);
+            }
+            out.endArray();
+        }
+        assertTrue(columnar.size() * 3 < json.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void reader_rejectsTruncatedFile() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ColumnarWriter writer = new ColumnarWriter(bytes, SCHEMA)) {
+            RowBuffer row = SCHEMA.newRowBuffer();
+            fill(row, 1);
+            writer.write(row);
+        }
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 3);
+        try (ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(truncated))) {
+            while (reader.next()) {
+                // read to the end
+            }
+        }
+    }
+
+    // Newest first, as the paged provider queries return them
+    private static void fill(RowBuffer row, int i) {
+        row.setLong(0, 1_000_000 - i);
+        row.setString(1, i % 7 == 0 ? null : "+1555000" + (i % 5));
+        row.setLong(2, 1_700_000_000_000L - i * 61_000L);
+        row.setLong(3, 1 + i % 2);
+        row.setString(4, "Message number " + i + " with é");
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DateRangeTest {
+
+    @Test
+    public void selection_bindsOnlyBoundedEnds() {
+        DateRange range = new DateRange(1000, 2000);
+        assertEquals("date >= ? AND date < ?", range.selection("date"));
+        assertArrayEquals(new String[]{"1000", "2000"}, range.selectionArgs());
+        assertTrue(range.contains(1000));
+        assertFalse(range.contains(2000));
+
+        DateRange recent = DateRange.lastDays(90, 100L * 24 * 60 * 60 * 1000);
+        assertEquals("date >= ?", recent.selection("date"));
+        assertArrayEquals(new String[]{Long.toString(10L * 24 * 60 * 60 * 1000)}, recent.selectionArgs());
+        assertTrue(recent.contains(Long.MAX_VALUE));
+
+        assertTrue(DateRange.ALL.isAll());
+        assertNull(DateRange.ALL.selection("date"));
+        assertEquals(0, DateRange.ALL.selectionArgs().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsInvertedRange() {
+        new DateRange(2000, 1000);
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+public class ExtractionEngineTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void run_mergesSectionsInRegistrationOrder() throws Exception {
+        // "slow" only finishes after "fast" has started, so completion order differs from output order
+        CountDownLatch fastStarted = new CountDownLatch(1);
+        File spool = new File(temp.getRoot(), "spool");
+        ExtractionEngine engine = new ExtractionEngine(2, spool, null)
+                .addSource("slow", ExtractionEngine.Shape.ARRAY, out -> {
+                    assertTrue(fastStarted.await(5, TimeUnit.SECONDS));
+                    out.beginArray().value(1).endArray();
+                })
+                .addSource("fast", ExtractionEngine.Shape.OBJECT, out -> {
+                    fastStarted.countDown();
+                    out.beginObject().name("a").value("b").endObject();
+                });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null);
+        List<ExtractionEngine.SourceResult> results = engine.run(writer, null);
+        writer.close();
+
+        assertEquals("{\"slow\":[1],\"fast\":{\"a\":\"b\"}}", bytes.toString("UTF-8"));
+        assertEquals("slow", results.get(0).name);
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(spool.exists());
+    }
+
+    @Test
+    public void run_failingSourceIsReportedAndWrittenEmpty() throws Exception {
+        ExtractionEngine engine = new ExtractionEngine(4, new File(temp.getRoot(), "spool"), "  ")
+                .addSource("broken", ExtractionEngine.Shape.ARRAY, out -> {
+                    out.beginArray().value("partial");
+                    throw new SecurityException("permission revoked");
+                })
+                .addSource("device", ExtractionEngine.Shape.OBJECT, out -> {
+                    throw new IllegalStateException("no device");
+                });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, "  ");
+        List<ExtractionEngine.SourceResult> results = engine.run(writer, null);
+        writer.close();
+
+        assertEquals("{\n  \"broken\": [],\n  \"device\": {}\n}", bytes.toString("UTF-8"));
+        assertTrue(results.get(0).error instanceof SecurityException);
+        assertTrue(results.get(1).error instanceof IllegalStateException);
+    }
+
+    @Test
+    public void run_failureAfterOutputStartedKeepsDocumentValid() throws Exception {
+        String row = new String(new char[1000]).replace('\0', 'x');
+        ExtractionEngine engine = new ExtractionEngine(1, new File(temp.getRoot(), "spool"), null)
+                .addSource("rows", ExtractionEngine.Shape.ARRAY, out -> {
+                    out.beginArray();
+                    // Well past the writer's buffer, so the start of the section has left the source
+                    for (int i = 0; i < 300; i++) {
+                        out.value(row);
+                    }
+                    out.beginObject().name("cut");
+                    throw new SecurityException("permission revoked");
+                })
+                .addSource("after", ExtractionEngine.Shape.ARRAY, out -> out.beginArray().value(1).endArray());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null);
+        List<ExtractionEngine.SourceResult> results = engine.run(writer, null);
+        writer.close();
+
+        String json = bytes.toString("UTF-8");
+        assertTrue(json.startsWith("{\"rows\":[\"" + row + "\","));
+        assertTrue(json.endsWith(",{\"cut\":null}],\"after\":[1]}"));
+        assertTrue(results.get(0).error instanceof SecurityException);
+        assertTrue(results.get(1).isSuccess());
+    }
+
+    @Test
+    public void run_publishesRowsAndBytesAsProgress() throws Exception {
+        ExportProgress progress = new ExportProgress("Extracting");
+        ExtractionEngine engine = new ExtractionEngine(2, new File(temp.getRoot(), "spool"), null)
+                .setProgress(progress)
+                .addSource("rows", ExtractionEngine.Shape.ARRAY, (out, metrics) -> {
+                    out.beginArray();
+                    for (int i = 0; i < 3; i++) {
+                        out.value(i);
+                        metrics.rowWritten();
+                    }
+                    out.endArray();
+                });
+
+        JsonStreamWriter writer = new JsonStreamWriter(new ByteArrayOutputStream(), null);
+        engine.run(writer, null);
+        writer.close();
+
+        ExportProgress.Task task = progress.getTasks().get(0);
+        assertEquals("rows", task.getName());
+        assertEquals(3, task.getItems());
+        assertTrue(task.getBytes() > 0);
+        assertTrue(task.isFinished());
+    }
+
+    @Test
+    public void run_nestedPartsKeepIndentation() throws Exception {
+        ExtractionEngine engine = new ExtractionEngine(1, new File(temp.getRoot(), "spool"), "  ")
+                .addSource("rows", ExtractionEngine.Shape.ARRAY,
+                        out -> out.beginArray().beginObject().name("id").value(7).endObject().endArray());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, "  ");
+        engine.run(writer, null);
+        writer.close();
+
+        assertEquals("{\n  \"rows\": [\n    {\n      \"id\": 7\n    }\n  ]\n}", bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void run_appendsMetricsSectionWithRowCounts() throws Exception {
+        ExtractionEngine engine = new ExtractionEngine(2, new File(temp.getRoot(), "spool"), null)
+                .addSource("rows", ExtractionEngine.Shape.ARRAY, (out, metrics) -> {
+                    long query = metrics.queryStarted();
+                    metrics.queryFinished(query);
+                    out.beginArray();
+                    for (int i = 0; i < 3; i++) {
+                        out.value(i);
+                        metrics.rowWritten();
+                    }
+                    metrics.rowSkipped();
+                    out.endArray();
+                })
+                .addSource("broken", ExtractionEngine.Shape.OBJECT, out -> {
+                    throw new IllegalStateException("gone");
+                })
+                .setMetricsSection("export_metrics");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null);
+        List<ExtractionEngine.SourceResult> results = engine.run(writer, null);
+        writer.close();
+
+        SourceMetrics rows = results.get(0).metrics;
+        assertEquals(3, rows.getRows());
+        assertEquals(1, rows.getSkippedRows());
+        assertTrue(rows.getFirstRowMillis() >= 0);
+        assertTrue(rows.getPeakHeapBytes() > 0);
+        assertEquals(-1, results.get(1).metrics.getFirstRowMillis());
+
+        String json = bytes.toString("UTF-8");
+        assertTrue(json.startsWith("{\"rows\":[0,1,2],\"broken\":{},\"export_metrics\":{\"wall_ms\":"));
+        assertTrue(json.contains("{\"name\":\"rows\",\"success\":true,\"rows\":3,\"skipped_rows\":1,"));
+        assertTrue(json.contains("{\"name\":\"broken\",\"success\":false,\"error\":\"IllegalStateException: gone\",\"rows\":0,"));
+        assertTrue(json.endsWith("}]}}"));
+    }
+
+    @Test
+    public void runLineDelimited_writesOneEntryPerSourceAndManifest() throws Exception {
+        ExtractionEngine engine = new ExtractionEngine(2, new File(temp.getRoot(), "spool"), "  ")
+                .addSource("device", ExtractionEngine.Shape.OBJECT,
+                        out -> out.beginObject().name("model").value("x").endObject())
+                .addSource("rows", ExtractionEngine.Shape.ARRAY, out -> {
+                    out.beginArray();
+                    out.beginObject().name("id").value(1).endObject();
+                    out.beginObject().name("id").value(2).endObject();
+                    out.endArray();
+                })
+                .addSource("broken", ExtractionEngine.Shape.OBJECT, out -> {
+                    throw new IllegalStateException("gone");
+                });
+
+        File zipFile = new File(temp.getRoot(), "export.zip");
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(zipFile, 6)) {
+            engine.runLineDelimited(zip, ZipArchiveWriter.DEFLATED, null);
+        }
+
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals("{\"model\":\"x\"}\n", read(zip, "device.ndjson"));
+            assertEquals("{\"id\":1}\n{\"id\":2}\n", read(zip, "rows.ndjson"));
+            assertEquals("{}\n", read(zip, "broken.ndjson"));
+            String manifest = read(zip, ExtractionEngine.NDJSON_MANIFEST).replaceAll("\\s", "");
+            assertTrue(manifest.contains("{\"name\":\"rows\",\"file\":\"rows.ndjson\",\"format\":\"ndjson\",\"shape\":\"array\",\"records\":2,\"success\":true}"));
+            assertTrue(manifest.contains("{\"name\":\"broken\",\"file\":\"broken.ndjson\",\"format\":\"ndjson\",\"shape\":\"object\",\"records\":1,\"success\":false}"));
+        }
+    }
+
+    private static String read(ZipFile zip, String name) throws Exception {
+        try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toString("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamWriterTest {
+
+    @Test
+    public void prettyPrint_matchesTwoSpaceLayout() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, "  ");
+        writer.beginObject();
+        writer.name("empty").beginArray().endArray();
+        writer.name("rows").beginArray();
+        writer.beginObject().name("id").value("1").name("read").value(true).endObject();
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+
+        assertEquals("{\n"
+                + "  \"empty\": [],\n"
+                + "  \"rows\": [\n"
+                + "    {\n"
+                + "      \"id\": \"1\",\n"
+                + "      \"read\": true\n"
+                + "    }\n"
+                + "  ]\n"
+                + "}", bytes.toString("UTF-8"));
+    }
+
+    @Test
+    public void strings_areEscapedAndUtf8Encoded() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null, 64);
+        writer.beginArray();
+        writer.value("a\"b\\c\n\u0001");
+        writer.value("é😀");
+        writer.value(2.0);
+        writer.value(1.5);
+        writer.endArray();
+        writer.close();
+
+        assertEquals("[\"a\\\"b\\\\c\\n\\u0001\",\"é😀\",2,1.5]",
+                new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(bytes.size(), writer.getBytesWritten());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void valueWithoutName_insideObject_fails() throws IOException {
+        JsonStreamWriter writer = new JsonStreamWriter(new ByteArrayOutputStream(), null);
+        writer.beginObject();
+        writer.value(1);
+    }
+
+    @Test
+    public void lineDelimited_writesOneArrayElementPerLine() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null).setLineDelimited();
+        writer.beginArray();
+        writer.beginObject().name("id").value(1).name("tags").beginArray().value("a").value("b").endArray().endObject();
+        writer.beginObject().name("id").value(2).endObject();
+        writer.value("tail");
+        writer.endArray();
+        writer.close();
+
+        assertEquals("{\"id\":1,\"tags\":[\"a\",\"b\"]}\n{\"id\":2}\n\"tail\"\n",
+                new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        writer = new JsonStreamWriter(object, null).setLineDelimited();
+        writer.beginObject().name("a").beginObject().endObject().endObject();
+        writer.close();
+        assertEquals("{\"a\":{}}\n", new String(object.toByteArray(), StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        writer = new JsonStreamWriter(empty, null).setLineDelimited();
+        writer.beginArray().endArray();
+        writer.close();
+        assertEquals(0, empty.size());
+    }
+}
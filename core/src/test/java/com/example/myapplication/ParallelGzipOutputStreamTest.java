@@ -0,0 +1,61 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class ParallelGzipOutputStreamTest {
+
+    @Test
+    public void write_parallelChunksFormOneGzipMember() throws Exception {
+        // Several chunks, written in odd sizes so chunk boundaries fall inside writes
+        Random random = new Random(5);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1_000_000) {
+            builder.append("{\"address\":\"+1555").append(random.nextInt(10_000)).append("\"},\n");
+        }
+        byte[] json = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (int threads : new int[]{1, 4}) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(
+                    compressed, Deflater.DEFAULT_COMPRESSION, threads)) {
+                for (int off = 0; off < json.length; ) {
+                    int len = Math.min(json.length - off, 1 + random.nextInt(70_000));
+                    out.write(json, off, len);
+                    off += len;
+                }
+            }
+            assertTrue(compressed.size() < json.length / 3);
+            assertArrayEquals(json, gunzip(compressed.toByteArray()));
+        }
+    }
+
+    @Test
+    public void close_emptyStreamIsValidGzip() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new ParallelGzipOutputStream(compressed, Deflater.BEST_SPEED, 2).close();
+        assertEquals(0, gunzip(compressed.toByteArray()).length);
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}
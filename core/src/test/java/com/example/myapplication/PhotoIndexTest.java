@@ -0,0 +1,96 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PhotoIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void saveAndLoad_roundTripsRecords() throws Exception {
+        PhotoIndex index = new PhotoIndex();
+        index.add(new PhotoIndex.Record(1, 100, 10, "aa", "photos_1.zip", "photo_1_a.jpg"));
+        index.add(new PhotoIndex.Record(2, 200, 20, "bb", "photos_1.zip", "photo_2_b.jpg"));
+        File file = new File(temp.getRoot(), "index.bin");
+        index.save(file);
+
+        PhotoIndex loaded = PhotoIndex.load(file);
+        assertEquals(2, loaded.size());
+        PhotoIndex.Record record = loaded.findUnchanged(2, 200, 20);
+        assertNotNull(record);
+        assertEquals("photos_1.zip", record.archive);
+        assertEquals("photo_2_b.jpg", record.entry);
+        assertFalse(new File(temp.getRoot(), "index.bin.tmp").exists());
+    }
+
+    @Test
+    public void findUnchanged_requiresSameSizeAndModificationTime() {
+        PhotoIndex index = new PhotoIndex();
+        index.add(new PhotoIndex.Record(1, 100, 10, "aa", "photos_1.zip", "photo_1_a.jpg"));
+
+        assertNull(index.findUnchanged(1, 101, 10));
+        assertNull(index.findUnchanged(1, 100, 11));
+        assertNull(index.findUnchanged(2, 100, 10));
+        // Same bytes under a new id are still found through the size and hash
+        assertTrue(index.containsSize(100));
+        assertEquals("photo_1_a.jpg", index.findByHash("aa").entry);
+    }
+
+    @Test
+    public void add_hashKeepsFirstArchivedCopy() {
+        PhotoIndex index = new PhotoIndex();
+        index.add(new PhotoIndex.Record(1, 100, 10, "aa", "photos_1.zip", "photo_1_a.jpg"));
+        index.add(new PhotoIndex.Record(5, 100, 50, "aa", "photos_1.zip", "photo_1_a.jpg"));
+        index.add(new PhotoIndex.Record(1, 120, 12, "cc", "photos_2.zip", "photo_1_a.jpg"));
+
+        assertEquals(2, index.size());
+        assertEquals("photos_1.zip", index.findByHash("aa").archive);
+        assertEquals("photos_2.zip", index.findUnchanged(1, 120, 12).archive);
+    }
+
+    @Test
+    public void addAll_rangedRunKeepsPhotosOutsideItsRange() throws Exception {
+        File file = new File(temp.getRoot(), "index.bin");
+        PhotoIndex saved = new PhotoIndex();
+        saved.add(new PhotoIndex.Record(1, 100, 10, "aa", "photos_1.zip", "photo_1_a.jpg"));
+        saved.add(new PhotoIndex.Record(2, 200, 20, "bb", "photos_1.zip", "photo_2_b.jpg"));
+        saved.save(file);
+
+        // A non-incremental run over a recent range starts empty and sees only photos 2 and 3
+        PhotoIndex run = new PhotoIndex();
+        run.add(new PhotoIndex.Record(2, 200, 20, "bb", "photos_2.zip", "photo_2_b.jpg"));
+        run.add(new PhotoIndex.Record(3, 300, 30, "cc", "photos_2.zip", "photo_3_c.jpg"));
+        PhotoIndex merged = PhotoIndex.load(file);
+        merged.addAll(run);
+        merged.save(file);
+
+        PhotoIndex loaded = PhotoIndex.load(file);
+        assertEquals(3, loaded.size());
+        assertEquals("photos_1.zip", loaded.findUnchanged(1, 100, 10).archive);
+        assertEquals("photos_2.zip", loaded.findUnchanged(2, 200, 20).archive);
+        assertEquals("photos_2.zip", loaded.findByHash("cc").archive);
+    }
+
+    @Test
+    public void load_missingFileIsEmpty() throws Exception {
+        assertEquals(0, PhotoIndex.load(new File(temp.getRoot(), "absent.bin")).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_rejectsForeignFile() throws Exception {
+        File file = new File(temp.getRoot(), "index.bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        PhotoIndex.load(file);
+    }
+}
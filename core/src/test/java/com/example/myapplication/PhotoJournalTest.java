@@ -0,0 +1,95 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class PhotoJournalTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void read_replaysCommitsAndIgnoresTornFrame() throws Exception {
+        File zipFile = temp.newFile("photos.zip");
+        File journalFile = new File(temp.getRoot(), "photos.journal");
+        PhotoIndex.Record copied = new PhotoIndex.Record(1, 3, 100, "aa", "photos.zip", "photo_1_a.jpg");
+        PhotoIndex.Record referenced = new PhotoIndex.Record(2, 5, 200, "bb", "older.zip", "photo_9_b.jpg");
+
+        long committedLength;
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(zipFile, Deflater.DEFAULT_COMPRESSION, 1);
+             PhotoJournal journal = PhotoJournal.create(journalFile, "photos.zip", "meta.json",
+                     DateRange.ALL, FieldSelection.ALL, false)) {
+            zip.addEntry("photo_1_a.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(new byte[3]), 3);
+            journal.commit(zip.sync(), 10, 2, 1, 1, Arrays.asList(1L, 2L), Arrays.asList(copied, referenced));
+            zip.addEntry("photo_3_c.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(new byte[4]), 4);
+            journal.commit(zip.sync(), 20, 3, 2, 1, Collections.singletonList(3L), Collections.emptyList());
+            committedLength = journalFile.length();
+            zip.addEntry("photo_4_d.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(new byte[5]), 5);
+            journal.commit(zip.sync(), 30, 4, 3, 1, Collections.singletonList(4L), Collections.emptyList());
+        }
+        // A crash part way through writing the last frame
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+            file.setLength(journalFile.length() - 3);
+        }
+
+        PhotoJournal.State state = PhotoJournal.read(journalFile);
+        assertEquals("photos.zip", state.archiveName);
+        assertEquals("meta.json", state.metadataEntryName);
+        assertEquals(2, state.checkpoint.getEntryCount());
+        assertEquals(20, state.metadataLength);
+        assertEquals(3, state.photoCount);
+        assertEquals(2, state.copiedCount);
+        assertEquals(1, state.referencedCount);
+        assertEquals(3, state.handledIds.size());
+        assertFalse(state.handledIds.contains(4L));
+        assertEquals("older.zip", state.records.get(1).archive);
+
+        // Appending drops the torn frame before the next commit
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(zipFile, Deflater.DEFAULT_COMPRESSION, 1, state.checkpoint);
+             PhotoJournal journal = PhotoJournal.append(journalFile, state)) {
+            assertEquals(committedLength, journalFile.length());
+            zip.addEntry("photo_5_e.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(new byte[6]), 6);
+            journal.commit(zip.sync(), 40, 4, 3, 1, Collections.singletonList(5L), Collections.emptyList());
+        }
+        state = PhotoJournal.read(journalFile);
+        assertEquals(3, state.checkpoint.getEntryCount());
+        assertEquals(40, state.metadataLength);
+        assertTrue(state.handledIds.contains(5L));
+    }
+
+    @Test
+    public void read_settingsDecideWhetherAnExportMayResume() throws Exception {
+        File journalFile = new File(temp.getRoot(), "photos.journal");
+        DateRange range = new DateRange(1000, 2000);
+        FieldSelection fields = FieldSelection.of(Arrays.asList("name", "size_bytes"));
+        PhotoJournal.create(journalFile, "photos.zip", "meta.json", range, fields, true).close();
+
+        PhotoJournal.State state = PhotoJournal.read(journalFile);
+        assertNull(state.checkpoint);
+        assertTrue(state.isFor(new DateRange(1000, 2000),
+                FieldSelection.of(Arrays.asList("size_bytes", "name")), true));
+        assertFalse(state.isFor(DateRange.ALL, fields, true));
+        assertFalse(state.isFor(range, FieldSelection.ALL, true));
+        assertFalse(state.isFor(range, fields, false));
+    }
+
+    @Test
+    public void read_missingOrForeignFileIsNull() throws Exception {
+        assertNull(PhotoJournal.read(new File(temp.getRoot(), "missing.journal")));
+        File other = temp.newFile("other.journal");
+        try (RandomAccessFile file = new RandomAccessFile(other, "rw")) {
+            file.writeLong(42);
+        }
+        assertNull(PhotoJournal.read(other));
+    }
+}
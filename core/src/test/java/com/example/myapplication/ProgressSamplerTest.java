@@ -0,0 +1,51 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProgressSamplerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void sample_smoothsRateAndEstimatesRemainingTime() {
+        ExportProgress progress = new ExportProgress("Archiving");
+        ExportProgress.Task task = progress.start("photos", "photos");
+        long start = task.getStartNanos();
+        task.setTotal(100);
+        task.setItems(10);
+        task.setBytes(10L * 1024 * 1024);
+
+        ProgressSampler sampler = new ProgressSampler();
+        ProgressSampler.Rate rate = sampler.sample(progress, start + SECOND).get(0);
+        assertEquals(10.0, rate.itemsPerSecond, 1e-9);
+        assertEquals(9000, rate.etaMillis);
+        assertEquals("photos: 10/100 photos, 10/s, 10.0 MB/s, ETA 0:09", ProgressSampler.describe(rate));
+
+        // A burst only moves the smoothed rate part of the way
+        task.setItems(40);
+        rate = sampler.sample(progress, start + 2 * SECOND).get(0);
+        assertEquals(10.0 + 0.3 * (30.0 - 10.0), rate.itemsPerSecond, 1e-9);
+
+        ExportProgress.Task other = progress.start("sms_messages", "rows");
+        other.setItems(1500);
+        other.finish();
+        List<ProgressSampler.Rate> rates = sampler.sample(progress, start + 3 * SECOND);
+        assertEquals(2, rates.size());
+        assertTrue(rates.get(1).finished);
+        assertEquals(-1, rates.get(1).total);
+
+        progress.setExpectedTasks(3);
+        assertTrue(sampler.describe(progress, start + 4 * SECOND).startsWith("Archiving 1/3 done\nphotos: 40/100"));
+    }
+
+    @Test
+    public void formatDuration_roundsUpToSeconds() {
+        assertEquals("0:01", ProgressSampler.formatDuration(1));
+        assertEquals("2:05", ProgressSampler.formatDuration(125_000));
+        assertEquals("1:00:00", ProgressSampler.formatDuration(3_600_000));
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class RecordSchemaTest {
+
+    private static final RecordSchema SCHEMA = RecordSchema.builder()
+            .string("id", "_id")
+            .string("name", "name", "Unknown")
+            .number("date", "date")
+            .dateIfSet("formatted_added", "date_added", 1000)
+            .label("type", "type", type -> type == 1 ? "RECEIVED" : "UNKNOWN")
+            .flag("read", "read")
+            .build();
+
+    @Test
+    public void projection_listsEachColumnOnce() {
+        assertArrayEquals(new String[]{"_id", "name", "date", "date_added", "type", "read"},
+                SCHEMA.getProjection());
+        assertEquals(2, SCHEMA.columnIndex("date"));
+        assertEquals(-1, SCHEMA.columnIndex("body"));
+    }
+
+    @Test
+    public void write_appliesDefaultsAndLabels() throws IOException {
+        RowBuffer row = SCHEMA.newRowBuffer();
+        row.setString(0, "42");
+        row.setString(1, null);
+        row.setLong(2, 1234L);
+        row.setLong(3, 0);
+        row.setLong(4, 1);
+        row.setLong(5, 1);
+
+        assertEquals("{\"id\":\"42\",\"name\":\"Unknown\",\"date\":1234,\"formatted_added\":\"\","
+                + "\"type\":\"RECEIVED\",\"read\":true}", write(row));
+    }
+
+    @Test
+    public void select_readsOnlySelectedAndRequiredColumns() throws IOException {
+        RecordSchema schema = RecordSchema.builder()
+                .string("id", "_id")
+                .string("body", "body")
+                .number("date", "date")
+                .date("formatted_date", "date")
+                .column("modified", RecordSchema.ColumnType.LONG)
+                .build();
+
+        RecordSchema selected = schema.select(FieldSelection.of(Arrays.asList("formatted_date", "missing")), "_id");
+        assertArrayEquals(new String[]{"_id", "date", "modified"}, selected.getProjection());
+
+        RowBuffer row = selected.newRowBuffer();
+        row.setString(0, "7");
+        row.setLong(1, 0);
+        row.setLong(2, 5);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null);
+        selected.write(row, writer);
+        writer.close();
+        assertEquals("{\"formatted_date\":\"" + TimestampFormatter.format(0) + "\"}", bytes.toString("UTF-8"));
+
+        assertSame(schema, schema.select(FieldSelection.ALL));
+    }
+
+    @Test
+    public void fieldSelection_parsesSectionsAndKeepsUnlistedWhole() {
+        Properties properties = new Properties();
+        properties.setProperty("sms_messages", " id, body ,");
+        properties.setProperty("call_logs", "*");
+        Map<String, FieldSelection> selections = FieldSelection.parse(properties);
+
+        assertEquals(1, selections.size());
+        FieldSelection sms = selections.get("sms_messages");
+        assertTrue(sms.includes("body"));
+        assertFalse(sms.includes("formatted_date"));
+        assertTrue(sms.includesAny("date", "id"));
+        assertTrue(FieldSelection.ALL.includes("anything"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_rejectsConflictingColumnTypes() {
+        RecordSchema.builder().string("id", "_id").number("id_number", "_id");
+    }
+
+    private static String write(RowBuffer row) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null);
+        SCHEMA.write(row, writer);
+        writer.close();
+        return bytes.toString("UTF-8");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SectionPipeTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test(timeout = 10000)
+    public void producerBlocksOnFullQueueOnceAttached() throws Exception {
+        SectionPipe pipe = new SectionPipe(new File(temp.getRoot(), "part"), 1);
+        OutputStream out = pipe.producer();
+        // Not attached yet, so this goes to the part file
+        out.write("head".getBytes(StandardCharsets.UTF_8));
+        assertTrue(pipe.attach());
+
+        byte[] chunk = new byte[SectionPipe.CHUNK_SIZE];
+        Arrays.fill(chunk, (byte) 'a');
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 3; i++) {
+                    out.write(chunk);
+                }
+                pipe.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        producer.start();
+
+        // One chunk fits in the queue; the next write waits for the reader
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertEquals(4 + SectionPipe.CHUNK_SIZE, pipe.getDelivered());
+
+        byte[] section = readAll(pipe.consumer());
+        producer.join();
+        assertEquals(4 + 3 * SectionPipe.CHUNK_SIZE, section.length);
+        assertEquals("heada", new String(section, 0, 5, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void failedSourceIsSkippedOrSurfacedToReader() throws Exception {
+        SectionPipe empty = new SectionPipe(new File(temp.getRoot(), "empty"), 4);
+        empty.fail(new IllegalStateException("denied"));
+        assertFalse(empty.attach());
+
+        SectionPipe partial = new SectionPipe(new File(temp.getRoot(), "partial"), 4);
+        partial.producer().write(new byte[]{'[', '1'});
+        partial.fail(new IllegalStateException("denied"));
+        assertTrue(partial.attach());
+        InputStream in = partial.consumer();
+        byte[] buffer = new byte[16];
+        assertEquals(2, in.read(buffer));
+        try {
+            in.read(buffer);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+}
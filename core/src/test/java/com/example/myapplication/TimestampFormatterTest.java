@@ -0,0 +1,85 @@
+package com.example.myapplication;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class TimestampFormatterTest {
+
+    private Locale savedLocale;
+    private TimeZone savedZone;
+
+    @Before
+    public void saveDefaults() {
+        savedLocale = Locale.getDefault();
+        savedZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void restoreDefaults() {
+        Locale.setDefault(savedLocale);
+        TimeZone.setDefault(savedZone);
+    }
+
+    @Test
+    public void format_matchesSimpleDateFormatAcrossZonesAndTransitions() {
+        String[] zones = {"UTC", "America/New_York", "Europe/London", "Australia/Lord_Howe",
+                "Asia/Kolkata", "America/Sao_Paulo", "Pacific/Apia"};
+        Random random = new Random(42);
+        for (String zone : zones) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zone));
+            Locale.setDefault(Locale.US);
+            // Sorted walk through a year with DST changes, then random instants over a century
+            for (long t = 1_699_000_000_000L; t < 1_731_000_000_000L; t += 997_331L * 60) {
+                assertSameAsSimpleDateFormat(t);
+            }
+            for (int i = 0; i < 20_000; i++) {
+                assertSameAsSimpleDateFormat((long) (random.nextDouble() * 4_000_000_000_000L) - 500_000_000_000L);
+            }
+            assertSameAsSimpleDateFormat(0);
+            assertSameAsSimpleDateFormat(-1);
+        }
+    }
+
+    @Test
+    public void format_followsLocaleDigitsAndCalendar() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Bangkok"));
+        Locale[] locales = {new Locale("th", "TH"), new Locale("ar", "EG"), new Locale("fa", "IR"),
+                new Locale("ja", "JP", "JP"), Locale.GERMANY};
+        for (Locale locale : locales) {
+            Locale.setDefault(locale);
+            for (long t = 1_600_000_000_000L; t < 1_600_000_000_000L + 86_400_000L * 3; t += 3_333_333L) {
+                assertSameAsSimpleDateFormat(t);
+            }
+        }
+    }
+
+    @Test
+    public void writeTo_producesQuotedTimestamp() throws Exception {
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        Locale.setDefault(Locale.US);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(bytes, null);
+        writer.beginArray();
+        TimestampFormatter.writeTo(1_234_567_890_123L, writer);
+        writer.endArray();
+        writer.close();
+
+        assertEquals("[\"2009-02-13 23:31:30\"]", bytes.toString("UTF-8"));
+    }
+
+    private static void assertSameAsSimpleDateFormat(long millis) {
+        String expected = new SimpleDateFormat(TimestampFormatter.PATTERN, Locale.getDefault()).format(new Date(millis));
+        assertEquals("at " + millis + " in " + TimeZone.getDefault().getID(),
+                expected, TimestampFormatter.format(millis));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class TraceRecorderTest {
+
+    @Test
+    public void writeTo_emitsCompleteEventsPerThread() throws Exception {
+        TraceRecorder recorder = new TraceRecorder();
+        try (Tracer.Section outer = recorder.begin("outer")) {
+            try (Tracer.Section inner = recorder.begin("inner \"quoted\"")) {
+                assertEquals(0, recorder.getEventCount());
+            }
+        }
+        Thread worker = new Thread(() -> recorder.begin("on worker").close(), "trace-worker");
+        worker.start();
+        worker.join();
+        recorder.begin("never closed");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JsonStreamWriter out = new JsonStreamWriter(bytes, null);
+        recorder.writeTo(out);
+        out.close();
+        String json = bytes.toString("UTF-8");
+
+        assertEquals(3, recorder.getEventCount());
+        assertTrue(json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[{\"name\":\"process_name\",\"ph\":\"M\""));
+        // Events are recorded as they close, so the inner section comes first
+        assertTrue(json.indexOf("\"name\":\"inner \\\"quoted\\\"\",\"cat\":\"export\",\"ph\":\"X\"")
+                < json.indexOf("\"name\":\"outer\",\"cat\":\"export\",\"ph\":\"X\""));
+        assertTrue(json.contains("\"args\":{\"name\":\"trace-worker\"}"));
+        assertTrue(json.contains("\"tid\":" + worker.getId() + "}"));
+        assertFalse(json.contains("never closed"));
+        assertTrue(json.endsWith("\"otherData\":{\"dropped_events\":0}}"));
+    }
+}
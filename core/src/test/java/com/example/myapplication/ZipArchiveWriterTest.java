@@ -0,0 +1,235 @@
+package com.example.myapplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Enumeration;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.*;
+
+public class ZipArchiveWriterTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void addEntry_storedAndDeflatedEntriesReadBack() throws Exception {
+        byte[] photo = new byte[300_000];
+        new java.util.Random(7).nextBytes(photo);
+        byte[] text = repeat("hello zip ", 5000);
+
+        File file = temp.newFile("out.zip");
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.DEFAULT_COMPRESSION)) {
+            zip.addEntry("photo.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(photo), photo.length);
+            zip.addEntry("notes.txt", ZipArchiveWriter.DEFLATED, new ByteArrayInputStream(text), -1);
+            try (OutputStream out = zip.openEntry("meta.json", ZipArchiveWriter.DEFLATED)) {
+                out.write("{}".getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(3, zip.getEntryCount());
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry stored = zipFile.getEntry("photo.jpg");
+            assertEquals(ZipEntry.STORED, stored.getMethod());
+            assertEquals(photo.length, stored.getCompressedSize());
+            assertEquals(crc(photo), stored.getCrc());
+            assertArrayEquals(photo, readAll(zipFile.getInputStream(stored)));
+
+            ZipEntry deflated = zipFile.getEntry("notes.txt");
+            assertEquals(ZipEntry.DEFLATED, deflated.getMethod());
+            assertTrue(deflated.getCompressedSize() < text.length);
+            assertArrayEquals(text, readAll(zipFile.getInputStream(deflated)));
+
+            assertEquals("{}", new String(readAll(zipFile.getInputStream(zipFile.getEntry("meta.json"))),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void addEntry_failedSourceIsRolledBack() throws Exception {
+        byte[] good = repeat("ok", 100);
+        InputStream failing = new InputStream() {
+            int remaining = 100_000;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- <= 0) {
+                    throw new IOException("provider went away");
+                }
+                return 'x';
+            }
+        };
+
+        File file = temp.newFile("rollback.zip");
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.DEFAULT_COMPRESSION)) {
+            zip.addEntry("first.txt", ZipArchiveWriter.STORED, new ByteArrayInputStream(good), good.length);
+            try {
+                zip.addEntry("broken.jpg", ZipArchiveWriter.STORED, failing, -1);
+                fail("expected SourceException");
+            } catch (ZipArchiveWriter.SourceException expected) {
+                // entry discarded
+            }
+            zip.addEntry("last.txt", ZipArchiveWriter.DEFLATED, new ByteArrayInputStream(good), good.length);
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(2, zipFile.size());
+            assertNull(zipFile.getEntry("broken.jpg"));
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            assertEquals("first.txt", entries.nextElement().getName());
+            assertArrayEquals(good, readAll(zipFile.getInputStream(entries.nextElement())));
+        }
+    }
+
+    @Test
+    public void addEntry_parallelChunksFormOneDeflateStream() throws Exception {
+        // Several chunks of text with repeats that cross chunk boundaries
+        java.util.Random random = new java.util.Random(11);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1_500_000) {
+            builder.append("line ").append(random.nextInt(500)).append(' ');
+        }
+        byte[] large = builder.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] photo = new byte[50_000];
+        random.nextBytes(photo);
+
+        File file = temp.newFile("parallel.zip");
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.DEFAULT_COMPRESSION, 4)) {
+            zip.addEntry("large.txt", ZipArchiveWriter.DEFLATED, new ByteArrayInputStream(large), large.length);
+            zip.addEntry("empty.txt", ZipArchiveWriter.DEFLATED, new ByteArrayInputStream(new byte[0]), 0);
+            zip.addEntry("photo.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(photo), photo.length);
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry entry = zipFile.getEntry("large.txt");
+            assertEquals(crc(large), entry.getCrc());
+            assertTrue(entry.getCompressedSize() < large.length / 2);
+            assertArrayEquals(large, readAll(zipFile.getInputStream(entry)));
+            assertEquals(0, readAll(zipFile.getInputStream(zipFile.getEntry("empty.txt"))).length);
+            assertArrayEquals(photo, readAll(zipFile.getInputStream(zipFile.getEntry("photo.jpg"))));
+        }
+    }
+
+    @Test
+    public void checkpoint_resumeDropsEverythingAfterSync() throws Exception {
+        byte[] photo = new byte[70_000];
+        new java.util.Random(3).nextBytes(photo);
+        byte[] text = repeat("resumed ", 2000);
+
+        File file = temp.newFile("resume.zip");
+        ZipArchiveWriter.Checkpoint checkpoint;
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.DEFAULT_COMPRESSION, 1)) {
+            zip.addEntry("kept.jpg", ZipArchiveWriter.STORED, new ByteArrayInputStream(photo), photo.length);
+            checkpoint = zip.sync();
+            zip.addEntry("lost.txt", ZipArchiveWriter.DEFLATED, new ByteArrayInputStream(text), -1);
+        }
+
+        // Round trip through the journal encoding
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        checkpoint.writeTo(new java.io.DataOutputStream(bytes), 0);
+        checkpoint = ZipArchiveWriter.Checkpoint.readFrom(
+                new java.io.DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+        assertEquals(1, checkpoint.getEntryCount());
+
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.DEFAULT_COMPRESSION, 1, checkpoint)) {
+            zip.addEntry("after.txt", ZipArchiveWriter.DEFLATED, new ByteArrayInputStream(text), -1);
+        }
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(2, zipFile.size());
+            assertNull(zipFile.getEntry("lost.txt"));
+            assertArrayEquals(photo, readAll(zipFile.getInputStream(zipFile.getEntry("kept.jpg"))));
+            assertArrayEquals(text, readAll(zipFile.getInputStream(zipFile.getEntry("after.txt"))));
+        }
+    }
+
+    @Test
+    public void methodFor_storesCompressedMediaOnly() {
+        CompressionPolicy policy = CompressionPolicy.mediaAware();
+        assertEquals(ZipArchiveWriter.STORED, policy.methodFor("image/jpeg"));
+        assertEquals(ZipArchiveWriter.STORED, policy.methodFor("image/heic"));
+        assertEquals(ZipArchiveWriter.DEFLATED, policy.methodFor("image/bmp"));
+        assertEquals(ZipArchiveWriter.DEFLATED, policy.methodFor(null));
+        assertEquals(ZipArchiveWriter.DEFLATED, CompressionPolicy.deflateAll().methodFor("image/jpeg"));
+    }
+
+    @Test
+    public void addEntry_channelEntriesAreCopiedObservedAndCounted() throws Exception {
+        // Larger than the 64 KB buffer, so the stored copy takes several flushes
+        byte[] photo = new byte[200_000];
+        new java.util.Random(3).nextBytes(photo);
+        byte[] text = repeat("channel ", 20_000);
+        File source = temp.newFile("photo.bin");
+        Files.write(source.toPath(), photo);
+
+        File file = temp.newFile("channel.zip");
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (ZipArchiveWriter zip = new ZipArchiveWriter(file, Deflater.DEFAULT_COMPRESSION, 1, null, 64 * 1024);
+             FileChannel channel = FileChannel.open(source.toPath())) {
+            zip.addEntry("photo.jpg", ZipArchiveWriter.STORED, channel, photo.length, digest::update);
+            zip.addEntry("notes.txt", ZipArchiveWriter.DEFLATED,
+                    Channels.newChannel(new ByteArrayInputStream(text)), -1, null);
+            assertEquals(photo.length + text.length, zip.getBytesIn());
+        }
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(photo), digest.digest());
+
+        try (ZipFile zipFile = new ZipFile(file)) {
+            ZipEntry stored = zipFile.getEntry("photo.jpg");
+            assertEquals(ZipEntry.STORED, stored.getMethod());
+            assertEquals(crc(photo), stored.getCrc());
+            assertArrayEquals(photo, readAll(zipFile.getInputStream(stored)));
+            assertArrayEquals(text, readAll(zipFile.getInputStream(zipFile.getEntry("notes.txt"))));
+        }
+    }
+
+    @Test
+    public void bufferSizeFor_wholeBlocksWithinLimits() {
+        assertEquals(512 * 1024, ZipArchiveWriter.bufferSizeFor(4096));
+        assertEquals(64 * 1024, ZipArchiveWriter.bufferSizeFor(512));
+        assertEquals(1024 * 1024, ZipArchiveWriter.bufferSizeFor(64 * 1024));
+        assertEquals(116 * 9000, ZipArchiveWriter.bufferSizeFor(9000));
+        assertEquals(ZipArchiveWriter.DEFAULT_BUFFER_SIZE, ZipArchiveWriter.bufferSizeFor(0));
+    }
+
+    private static byte[] repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+}